@@ -1,22 +1,47 @@
 package edu.stanford.protege.search.lucene.tab.engine;
 
+import org.apache.lucene.analysis.reverse.ReverseStringFilter;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.AutomatonQuery;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.LevenshteinAutomata;
+import org.apache.lucene.util.automaton.RegExp;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.model.find.OWLEntityFinder;
 import org.protege.editor.search.lucene.*;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLProperty;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * @author Josef Hardi <johardi@stanford.edu><br>
@@ -48,15 +73,76 @@ public abstract class BasicQuery implements SearchTabQuery {
 
     public static class Factory {
 
+        /**
+         * Separates the values of a bulk match given as a single search string, in
+         * addition to line breaks. A value containing the separator escapes it with
+         * {@link #BULK_VALUE_ESCAPE}.
+         */
+        public static final char BULK_VALUE_SEPARATOR = '|';
+
+        /**
+         * Escapes the separator or itself in a bulk match value, e.g., <code>a\|b</code>
+         */
+        public static final char BULK_VALUE_ESCAPE = '\\';
+
+        /**
+         * Separates the lower and the upper bound of a between query, e.g.,
+         * <code>3 .. 5</code> or <code>2024-01-01 .. 2024-12-31</code>
+         */
+        public static final String RANGE_SEPARATOR = "\\s*\\.\\.\\s*";
+
+        /**
+         * The maximum number of states of the automaton of a regex or wildcard pattern.
+         * Patterns that need more are rejected rather than left to exhaust the memory.
+         */
+        public static final int MAX_DETERMINIZED_STATES = 10000;
+
+        /**
+         * The maximum number of similar terms that a word of a fuzzy query expands to,
+         * keeping the query fast on large dictionaries
+         */
+        public static final int FUZZY_MAX_EXPANSIONS = 50;
+
         private final SearchContext searchContext;
         private final LuceneSearcher searcher;
+        private final IndexFieldOptions fieldOptions;
+
+        private int fuzzyMaxEdits = LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE;
+        private int fuzzyPrefixLength = 1;
 
         private final Set<OWLEntity> allEntities = new HashSet<>();
         private final Set<OWLEntity> allClasses = new HashSet<>();
 
         public Factory(SearchContext searchContext, LuceneSearcher searcher) {
+            this(searchContext, searcher, IndexFieldOptions.NONE);
+        }
+
+        /**
+         * @param fieldOptions the optional fields that the index holds, which the
+         *                     created queries use where they apply
+         */
+        public Factory(SearchContext searchContext, LuceneSearcher searcher, IndexFieldOptions fieldOptions) {
             this.searchContext = searchContext;
             this.searcher = searcher;
+            this.fieldOptions = fieldOptions;
+        }
+
+        /**
+         * Sets how similar the words of a fuzzy query must be to the indexed words.
+         *
+         * @param maxEdits     the maximum edit distance, from 0 to 2
+         * @param prefixLength the number of leading characters that must match exactly
+         */
+        public void setFuzzyParameters(int maxEdits, int prefixLength) {
+            if (maxEdits < 0 || maxEdits > LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE) {
+                throw new IllegalArgumentException("The maximum edit distance must be between 0 and "
+                        + LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE + ": " + maxEdits);
+            }
+            if (prefixLength < 0) {
+                throw new IllegalArgumentException("The prefix length must not be negative: " + prefixLength);
+            }
+            this.fuzzyMaxEdits = maxEdits;
+            this.fuzzyPrefixLength = prefixLength;
         }
 
         public BasicQuery createQuery(OWLProperty property, QueryType type, String searchString) {
@@ -73,6 +159,36 @@ public abstract class BasicQuery implements SearchTabQuery {
                 else if (type.equals(QueryType.EXACT_MATCH)) {
                     return createExactMatchFilter(property, toLowerCase(searchString));
                 }
+                else if (type.equals(QueryType.BULK_MATCH)) {
+                    return createBulkMatchFilter(property, splitBulkValues(searchString));
+                }
+                else if (type.equals(QueryType.GREATER_THAN)) {
+                    return createGreaterThanFilter(property, searchString);
+                }
+                else if (type.equals(QueryType.LESS_THAN)) {
+                    return createLessThanFilter(property, searchString);
+                }
+                else if (type.equals(QueryType.FUZZY)) {
+                    return createFuzzyFilter(property, toLowerCase(searchString));
+                }
+                else if (type.equals(QueryType.REGEX)) {
+                    return createRegexFilter(property, searchString);
+                }
+                else if (type.equals(QueryType.WILDCARD)) {
+                    return createWildcardFilter(property, searchString);
+                }
+                else if (type.equals(QueryType.BETWEEN)) {
+                    String[] bounds = searchString.trim().split(RANGE_SEPARATOR, 2);
+                    if (bounds.length != 2) {
+                        throw new IllegalArgumentException("Expected a range like 'lower .. upper': " + searchString);
+                    }
+                    return createBetweenFilter(property, bounds[0], bounds[1]);
+                }
+            }
+            else if (QueryType.HierarchyQueryTypes.contains(type)) {
+                if (type.equals(QueryType.DESCENDANT_OF)) {
+                    return createDescendantOfFilter(searchString);
+                }
             }
             else if (QueryType.NonValueQueryTypes.contains(type)) {
                 if (type.equals(QueryType.PROPERTY_VALUE_PRESENT)) {
@@ -117,6 +233,187 @@ public abstract class BasicQuery implements SearchTabQuery {
                     String.format("%s exact match %s", getDisplayName(property), searchString));
         }
 
+        /**
+         * Creates a query that finds the entities having any of the given values, either
+         * as a literal (compared like {@link #createExactMatchFilter(OWLProperty, String)})
+         * or as an IRI.
+         */
+        public BulkMatchQuery createBulkMatchFilter(OWLProperty property, Collection<String> values) {
+            return createBulkMatchFilter(property, values.iterator());
+        }
+
+        /**
+         * Creates a bulk match query from the values read from the given reader, one
+         * value per line. The lines are consumed as they are read.
+         */
+        public BulkMatchQuery createBulkMatchFilter(OWLProperty property, BufferedReader reader) throws IOException {
+            try {
+                return createBulkMatchFilter(property, reader.lines().iterator());
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        private BulkMatchQuery createBulkMatchFilter(OWLProperty property, Iterator<String> values) {
+            Map<String, List<String>> valuesByTerm = new LinkedHashMap<>();
+            Set<BytesRef> keywords = new HashSet<>();
+            Set<BytesRef> iris = new HashSet<>();
+            int count = 0;
+            while (values.hasNext()) {
+                String value = values.next();
+                String iri = value.trim();
+                if (iri.isEmpty()) {
+                    continue;
+                }
+                count++;
+                String keyword = SearchTabIndexer.normalizeKeyword(value);
+                if (SearchTabIndexer.isIndexedKeyword(keyword)) {
+                    valuesByTerm.computeIfAbsent(keyword, k -> new ArrayList<>()).add(value);
+                    keywords.add(new BytesRef(keyword));
+                }
+                if (!iri.equals(keyword)) {
+                    valuesByTerm.computeIfAbsent(iri, k -> new ArrayList<>()).add(value);
+                }
+                iris.add(new BytesRef(iri));
+            }
+            return new BulkMatchQuery(createBulkMatchQuery(property, keywords, iris), searcher, valuesByTerm,
+                    String.format("%s matches any of %d values", getDisplayName(property), count));
+        }
+
+        /**
+         * Splits the values of a bulk match given as a single search string at line
+         * breaks and unescaped {@link #BULK_VALUE_SEPARATOR}s.
+         */
+        public static List<String> splitBulkValues(String searchString) {
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            for (int i = 0; i < searchString.length(); i++) {
+                char c = searchString.charAt(i);
+                char next = (i + 1 < searchString.length()) ? searchString.charAt(i + 1) : 0;
+                if (c == BULK_VALUE_ESCAPE && (next == BULK_VALUE_SEPARATOR || next == BULK_VALUE_ESCAPE)) {
+                    value.append(next);
+                    i++;
+                }
+                else if (c == BULK_VALUE_SEPARATOR || c == '\r' || c == '\n') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                }
+                else {
+                    value.append(c);
+                }
+            }
+            values.add(value.toString());
+            return values;
+        }
+
+        /**
+         * Creates a query that finds the entities having a numeric or date value greater
+         * than the given one. Whether numbers or dates are compared is resolved from the
+         * values of the property when the query is evaluated, see {@link RangeQuery}.
+         */
+        public RangeQuery createGreaterThanFilter(OWLProperty property, String lowerBound) {
+            return createRangeFilter(property, lowerBound, null,
+                    String.format("%s greater than %s", getDisplayName(property), lowerBound));
+        }
+
+        /**
+         * Creates a query that finds the entities having a numeric or date value less
+         * than the given one.
+         */
+        public RangeQuery createLessThanFilter(OWLProperty property, String upperBound) {
+            return createRangeFilter(property, null, upperBound,
+                    String.format("%s less than %s", getDisplayName(property), upperBound));
+        }
+
+        /**
+         * Creates a query that finds the entities having a numeric or date value between
+         * the given ones, both inclusive.
+         */
+        public RangeQuery createBetweenFilter(OWLProperty property, String lowerBound, String upperBound) {
+            return createRangeFilter(property, lowerBound, upperBound,
+                    String.format("%s between %s and %s", getDisplayName(property), lowerBound, upperBound));
+        }
+
+        /**
+         * Creates a query that finds the entities having a value with words similar to
+         * all the given words, within the edit distance set by {@link
+         * #setFuzzyParameters(int, int)}. Short words allow fewer edits, so that they do
+         * not match nearly every word of their length.
+         */
+        public KeywordQuery createFuzzyFilter(OWLProperty property, String searchString) {
+            return new KeywordQuery(createFuzzyQuery(property, searchString), searcher,
+                    String.format("%s is similar to %s", getDisplayName(property), searchString));
+        }
+
+        /**
+         * Creates a query that finds the entities having a value that matches the given
+         * regular expression, e.g., <code>^NCIT_C\d{5}$</code>. The expression is
+         * matched case-insensitively against the whole value (like {@link
+         * #createExactMatchFilter(OWLProperty, String)}), and it is taken to be anchored
+         * only where it starts with <code>^</code> or ends with <code>$</code>.
+         *
+         * @throws IllegalArgumentException if the expression is invalid or too complex
+         */
+        public KeywordQuery createRegexFilter(OWLProperty property, String regex) {
+            Automaton automaton;
+            try {
+                automaton = new RegExp(toKeywordRegex(regex), RegExp.NONE).toAutomaton(MAX_DETERMINIZED_STATES);
+            }
+            catch (TooComplexToDeterminizeException e) {
+                throw new IllegalArgumentException("The regular expression is too complex: " + regex);
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid regular expression: " + regex + " (" + e.getMessage() + ")");
+            }
+            return new KeywordQuery(createAutomatonQuery(property, automaton, regex), searcher,
+                    String.format("%s matches regex %s", getDisplayName(property), regex));
+        }
+
+        /**
+         * Creates a query that finds the entities having a value that matches the given
+         * wildcard pattern as a whole, where <code>*</code> stands for any text and
+         * <code>?</code> for any one character. The pattern is case-insensitive.
+         *
+         * @throws IllegalArgumentException if the pattern is too complex
+         */
+        public KeywordQuery createWildcardFilter(OWLProperty property, String pattern) {
+            Automaton automaton = WildcardQuery.toAutomaton(new Term(SearchTabIndexField.ANNOTATION_TEXT_KEYWORD,
+                    SearchTabIndexer.normalizeKeyword(pattern)));
+            return new KeywordQuery(createAutomatonQuery(property, automaton, pattern), searcher,
+                    String.format("%s matches wildcard %s", getDisplayName(property), pattern));
+        }
+
+        /**
+         * Creates a query that finds the descendants of the given class in the asserted
+         * class hierarchy. The class is given by its rendering or by its IRI.
+         *
+         * @throws IllegalArgumentException if no class has the given rendering or IRI
+         */
+        public DescendantOfQuery createDescendantOfFilter(String classNameOrIri) {
+            String name = classNameOrIri.trim();
+            OWLEntityFinder entityFinder = searcher.getEditorKit().getOWLModelManager().getOWLEntityFinder();
+            OWLClass cls = entityFinder.getOWLClass(name);
+            if (cls == null) {
+                String iri = (name.startsWith("<") && name.endsWith(">")) ? name.substring(1, name.length() - 1) : name;
+                for (OWLEntity entity : entityFinder.getEntities(IRI.create(iri))) {
+                    if (entity.isOWLClass()) {
+                        cls = entity.asOWLClass();
+                        break;
+                    }
+                }
+            }
+            if (cls == null) {
+                throw new IllegalArgumentException("No class is named or identified by " + name);
+            }
+            return createDescendantOfFilter(cls);
+        }
+
+        public DescendantOfQuery createDescendantOfFilter(OWLClass cls) {
+            return new DescendantOfQuery(cls.getIRI().toString(), searcher,
+                    String.format("DescendantOf(%s)", getDisplayName(cls)));
+        }
+
         public PropertyValuePresent createPropertyValuePresentFilter(OWLProperty property) {
             return new PropertyValuePresent(createPropertyValueQuery(property), searcher,
                     String.format("PropertyPresent(%s)", getDisplayName(property)));
@@ -152,41 +449,236 @@ public abstract class BasicQuery implements SearchTabQuery {
             return searcher.getEditorKit().getOWLModelManager().getRendering(entity);
         }
 
-        private static BooleanQuery createContainsWordQuery(OWLProperty property, String searchString) {
+        private Query createContainsWordQuery(OWLProperty property, String searchString) {
+            if (fieldOptions.hasNGrams(property.getIRI().toString())
+                    && searchString.length() >= NGramClassicWhitespaceAnalyzer.MIN_GRAM) {
+                BooleanQuery.Builder builder = new BooleanQuery.Builder();
+                builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, property.getIRI().toString()), Occur.MUST);
+                builder.add(createNGramQuery(searchString), Occur.MUST);
+                return builder.build();
+            }
+            return createAnnotationTextQuery(property, field -> LuceneUtils.createLikeQuery(field, searchString));
+        }
+
+        /*
+         * Looks up a substring as a single n-gram. A substring longer than the largest
+         * n-gram must contain every n-gram of that size at all offsets, and all of them
+         * must come from the same word. The n-grams of a word share its position, so
+         * they are looked up as a phrase with every n-gram at the same position.
+         */
+        private static Query createNGramQuery(String searchString) {
+            int size = NGramClassicWhitespaceAnalyzer.MAX_GRAM;
+            if (searchString.length() <= size) {
+                return LuceneUtils.createTermQuery(SearchTabIndexField.ANNOTATION_TEXT_NGRAM, searchString);
+            }
+            Set<String> windows = new LinkedHashSet<>();
+            for (int i = 0; i + size <= searchString.length(); i++) {
+                windows.add(searchString.substring(i, i + size));
+            }
+            PhraseQuery.Builder builder = new PhraseQuery.Builder();
+            for (String window : windows) {
+                builder.add(new Term(SearchTabIndexField.ANNOTATION_TEXT_NGRAM, window), 0);
+            }
+            return builder.build();
+        }
+
+        private Query createContainsPhraseQuery(OWLProperty property, String searchString) {
+            return createAnnotationTextQuery(property, field -> LuceneUtils.createPhraseQuery(field, searchString));
+        }
+
+        private Query createFuzzyQuery(OWLProperty property, String searchString) {
+            return createAnnotationTextQuery(property, field -> {
+                BooleanQuery.Builder builder = new BooleanQuery.Builder();
+                for (String word : searchString.trim().split("\\s+")) {
+                    int maxEdits = Math.min(fuzzyMaxEdits, getFuzzyMaxEdits(word));
+                    builder.add(new FuzzyQuery(new Term(field, word), maxEdits, fuzzyPrefixLength,
+                            FUZZY_MAX_EXPANSIONS, true), Occur.MUST);
+                }
+                return builder.build();
+            });
+        }
+
+        /*
+         * Allows no edits in words of up to two characters, one in words of up to five
+         * characters and two in longer words.
+         */
+        private static int getFuzzyMaxEdits(String word) {
+            if (word.length() < 3) {
+                return 0;
+            }
+            return word.length() < 6 ? 1 : 2;
+        }
+
+        private Query createStartsWithQuery(OWLProperty property, String searchString) {
+            return createAnnotationTextQuery(property, field -> LuceneUtils.createPrefixQuery(field, searchString));
+        }
+
+        /*
+         * Applies a text query to the annotation text of the given property. If the
+         * property has a field of its own, the query runs on that field alone, otherwise
+         * it runs on the shared annotation text field and is restricted to the property.
+         */
+        private Query createAnnotationTextQuery(OWLProperty property, Function<String, Query> textQuery) {
+            String propertyIri = property.getIRI().toString();
+            if (fieldOptions.hasPropertyField(propertyIri)) {
+                return textQuery.apply(SearchTabIndexField.getPropertyTextField(propertyIri));
+            }
             BooleanQuery.Builder builder = new BooleanQuery.Builder();
-            builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, property.getIRI().toString()), Occur.MUST);
-            builder.add(LuceneUtils.createLikeQuery(IndexField.ANNOTATION_TEXT, searchString), Occur.MUST);
+            builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, propertyIri), Occur.MUST);
+            builder.add(textQuery.apply(IndexField.ANNOTATION_TEXT), Occur.MUST);
             return builder.build();
         }
 
-        private static BooleanQuery createContainsPhraseQuery(OWLProperty property, String searchString) {
+        private static BooleanQuery createEndsWithQuery(OWLProperty property, String searchString) {
             BooleanQuery.Builder builder = new BooleanQuery.Builder();
             builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, property.getIRI().toString()), Occur.MUST);
-            builder.add(LuceneUtils.createPhraseQuery(IndexField.ANNOTATION_TEXT, searchString), Occur.MUST);
+            builder.add(LuceneUtils.createPrefixQuery(SearchTabIndexField.ANNOTATION_TEXT_REVERSED,
+                    ReverseStringFilter.reverse(searchString)), Occur.MUST);
             return builder.build();
         }
 
-        private static BooleanQuery createStartsWithQuery(OWLProperty property, String searchString) {
+        private static BooleanQuery createExactMatchQuery(OWLProperty property, String searchString) {
             BooleanQuery.Builder builder = new BooleanQuery.Builder();
             builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, property.getIRI().toString()), Occur.MUST);
-            builder.add(LuceneUtils.createPrefixQuery(IndexField.ANNOTATION_TEXT, searchString), Occur.MUST);
+            builder.add(LuceneUtils.createTermQuery(SearchTabIndexField.ANNOTATION_TEXT_KEYWORD,
+                    SearchTabIndexer.normalizeKeyword(searchString)), Occur.MUST);
             return builder.build();
         }
 
-        private static BooleanQuery createEndsWithQuery(OWLProperty property, String searchString) {
+        private static BooleanQuery createAutomatonQuery(OWLProperty property, Automaton automaton, String pattern) {
+            Query automatonQuery;
+            try {
+                automatonQuery = new AutomatonQuery(new Term(SearchTabIndexField.ANNOTATION_TEXT_KEYWORD), automaton,
+                        MAX_DETERMINIZED_STATES);
+            }
+            catch (TooComplexToDeterminizeException e) {
+                throw new IllegalArgumentException("The pattern is too complex: " + pattern);
+            }
             BooleanQuery.Builder builder = new BooleanQuery.Builder();
             builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, property.getIRI().toString()), Occur.MUST);
-            builder.add(LuceneUtils.createSuffixQuery(IndexField.ANNOTATION_TEXT, searchString), Occur.MUST);
+            builder.add(automatonQuery, Occur.MUST);
             return builder.build();
         }
 
-        private static BooleanQuery createExactMatchQuery(OWLProperty property, String searchString) {
+        /*
+         * Translates a Java-style regular expression into the syntax of Lucene's RegExp,
+         * which always matches whole terms: the anchors ^ and $ are dropped and an
+         * unanchored end is padded with .*. The shorthand classes \d, \w and \s are
+         * expanded, and literal characters are lower-cased like the keyword terms.
+         */
+        private static String toKeywordRegex(String regex) {
+            String pattern = regex.trim();
+            boolean anchoredStart = pattern.startsWith("^");
+            boolean anchoredEnd = pattern.endsWith("$") && !isEscaped(pattern, pattern.length() - 1);
+            pattern = pattern.substring(anchoredStart ? 1 : 0, anchoredEnd ? pattern.length() - 1 : pattern.length());
+            StringBuilder sb = new StringBuilder();
+            if (!anchoredStart) {
+                sb.append(".*");
+            }
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '\\' && i + 1 < pattern.length()) {
+                    char escaped = pattern.charAt(++i);
+                    switch (escaped) {
+                        case 'd': sb.append("[0-9]"); break;
+                        case 'w': sb.append("[a-z0-9_]"); break;
+                        case 's': sb.append(' '); break;
+                        case 'D':
+                        case 'W':
+                        case 'S':
+                            throw new IllegalArgumentException("Unsupported character class \\" + escaped);
+                        default: sb.append('\\').append(Character.toLowerCase(escaped));
+                    }
+                }
+                else if (c == '"') {
+                    sb.append("\\\"");
+                }
+                else {
+                    sb.append(Character.toLowerCase(c));
+                }
+            }
+            if (!anchoredEnd) {
+                sb.append(".*");
+            }
+            return sb.toString();
+        }
+
+        private static boolean isEscaped(String pattern, int index) {
+            int backslashes = 0;
+            for (int i = index - 1; i >= 0 && pattern.charAt(i) == '\\'; i--) {
+                backslashes++;
+            }
+            return backslashes % 2 == 1;
+        }
+
+        private static BooleanQuery createBulkMatchQuery(OWLProperty property, Set<BytesRef> keywords,
+                Set<BytesRef> iris) {
+            BooleanQuery.Builder values = new BooleanQuery.Builder();
+            values.add(new TermInSetQuery(SearchTabIndexField.ANNOTATION_TEXT_KEYWORD, keywords), Occur.SHOULD);
+            values.add(new TermInSetQuery(IndexField.ANNOTATION_VALUE_IRI, iris), Occur.SHOULD);
             BooleanQuery.Builder builder = new BooleanQuery.Builder();
             builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, property.getIRI().toString()), Occur.MUST);
-            builder.add(LuceneUtils.createPhraseQuery(IndexField.ANNOTATION_TEXT, searchString), Occur.MUST);
+            builder.add(values.build(), Occur.MUST);
             return builder.build();
         }
 
+        /*
+         * Creates a range query on the numeric and on the date points, as far as the
+         * bounds can be read as numbers or dates. A missing bound is open. A query with
+         * both bounds is inclusive (between), otherwise the bound is exclusive (greater
+         * than, less than).
+         */
+        private RangeQuery createRangeFilter(OWLProperty property, String lowerBound, String upperBound,
+                String algebraString) {
+            boolean inclusive = lowerBound != null && upperBound != null;
+            Query numberQuery = createNumberRangeQuery(lowerBound, upperBound, inclusive);
+            Query dateTimeQuery = createDateTimeRangeQuery(lowerBound, upperBound, inclusive);
+            if (numberQuery == null && dateTimeQuery == null) {
+                throw new IllegalArgumentException("Not a number or a date: " + algebraString);
+            }
+            return new RangeQuery(property.getIRI().toString(), numberQuery, dateTimeQuery, searcher, algebraString);
+        }
+
+        private static Query createNumberRangeQuery(String lowerBound, String upperBound, boolean inclusive) {
+            double lower = Double.NEGATIVE_INFINITY;
+            double upper = Double.POSITIVE_INFINITY;
+            if (lowerBound != null) {
+                Double number = TypedLiteralValues.parseNumber(lowerBound);
+                if (number == null) {
+                    return null;
+                }
+                lower = inclusive ? number : Math.nextUp(number);
+            }
+            if (upperBound != null) {
+                Double number = TypedLiteralValues.parseNumber(upperBound);
+                if (number == null) {
+                    return null;
+                }
+                upper = inclusive ? number : Math.nextDown(number);
+            }
+            return DoublePoint.newRangeQuery(SearchTabIndexField.ANNOTATION_NUMBER, lower, upper);
+        }
+
+        private static Query createDateTimeRangeQuery(String lowerBound, String upperBound, boolean inclusive) {
+            long lower = Long.MIN_VALUE;
+            long upper = Long.MAX_VALUE;
+            if (lowerBound != null) {
+                Long dateTime = TypedLiteralValues.parseDateTime(lowerBound);
+                if (dateTime == null) {
+                    return null;
+                }
+                lower = inclusive ? dateTime : dateTime + 1;
+            }
+            if (upperBound != null) {
+                Long dateTime = TypedLiteralValues.parseDateTime(upperBound);
+                if (dateTime == null) {
+                    return null;
+                }
+                upper = inclusive ? dateTime : dateTime - 1;
+            }
+            return LongPoint.newRangeQuery(SearchTabIndexField.ANNOTATION_DATE_TIME, lower, upper);
+        }
+
         private static Query createPropertyValueQuery(OWLProperty property) {
             return LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, property.getIRI().toString());
         }
@@ -226,13 +718,17 @@ public abstract class BasicQuery implements SearchTabQuery {
         }
 
         public void handle(Document doc) {
-            String subjectIri = doc.get(IndexField.ENTITY_IRI);
-            Optional<OWLEntity> entity = entityFinder.getEntities(IRI.create(subjectIri)).stream().findFirst();
+            Optional<OWLEntity> entity = getEntity(doc);
             if (entity.isPresent()) {
                 results.add(entity.get());
             }
         }
 
+        public Optional<OWLEntity> getEntity(Document doc) {
+            String subjectIri = doc.get(IndexField.ENTITY_IRI);
+            return entityFinder.getEntities(IRI.create(subjectIri)).stream().findFirst();
+        }
+
         public Set<OWLEntity> getSearchResults() {
             return results;
         }
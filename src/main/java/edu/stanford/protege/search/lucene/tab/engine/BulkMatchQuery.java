@@ -0,0 +1,150 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Query;
+import org.protege.editor.search.lucene.IndexField;
+import org.protege.editor.search.lucene.LuceneSearcher;
+import org.protege.editor.search.lucene.QueryEvaluationException;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Looks up many values of a property at once. All the values are compiled into a
+ * single terms-in-set query, so the index is searched in one pass no matter how many
+ * values are given. Besides the union of the matching entities, the query can tell
+ * which entities each of the given values matched.
+ */
+public class BulkMatchQuery extends BasicQuery {
+
+    private final Query luceneQuery;
+    private final LuceneSearcher searcher;
+
+    private final Map<String, List<String>> valuesByTerm;
+
+    private final String algebraString;
+
+    /**
+     * @param valuesByTerm the given values by the index term they are looked up with,
+     *                     i.e., the normalized keyword of a literal or an IRI
+     */
+    public BulkMatchQuery(Query luceneQuery, LuceneSearcher searcher, Map<String, List<String>> valuesByTerm,
+            String algebraString) {
+        this.luceneQuery = luceneQuery;
+        this.searcher = searcher;
+        this.valuesByTerm = valuesByTerm;
+        this.algebraString = algebraString;
+    }
+
+    @Override
+    public Query getLuceneQuery() {
+        return luceneQuery;
+    }
+
+    @Override
+    public LuceneSearcher getSearcher() {
+        return searcher;
+    }
+
+    @Override
+    public String getAlgebraString() {
+        return algebraString;
+    }
+
+    @Override
+    public Set<OWLEntity> evaluate(SearchProgressListener listener, AtomicBoolean stopSearch) throws QueryEvaluationException {
+        SearchDocumentHandler handler = new SearchDocumentHandler(searcher.getEditorKit());
+        Set<Document> docs = evaluate();
+        int counter = 0;
+        for (Document doc : docs) {
+            if (stopSearch.get()) { // if should stop
+                return handler.getSearchResults();
+            }
+            handler.handle(doc);
+            if (listener != null) {
+                listener.fireSearchingProgressed((counter++*100)/docs.size());
+            }
+        }
+        return handler.getSearchResults();
+    }
+
+    /**
+     * Returns the entities matched by each of the given values, in the order the values
+     * were given. Values without a match are mapped to an empty set.
+     */
+    public Map<String, Set<OWLEntity>> evaluateMatches() throws QueryEvaluationException {
+        Map<String, Set<OWLEntity>> matches = new LinkedHashMap<>();
+        for (List<String> values : valuesByTerm.values()) {
+            for (String value : values) {
+                matches.put(value, new HashSet<>());
+            }
+        }
+        SearchDocumentHandler handler = new SearchDocumentHandler(searcher.getEditorKit());
+        for (Document doc : evaluate()) {
+            Optional<OWLEntity> entity = handler.getEntity(doc);
+            if (!entity.isPresent()) {
+                continue;
+            }
+            for (String term : getTerms(doc)) {
+                for (String value : valuesByTerm.getOrDefault(term, Collections.emptyList())) {
+                    matches.get(value).add(entity.get());
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static Set<String> getTerms(Document doc) {
+        Set<String> terms = new HashSet<>();
+        String text = doc.get(IndexField.ANNOTATION_TEXT);
+        if (text != null) {
+            String keyword = SearchTabIndexer.normalizeKeyword(text);
+            if (SearchTabIndexer.isIndexedKeyword(keyword)) {
+                terms.add(keyword);
+            }
+        }
+        String iri = doc.get(IndexField.ANNOTATION_VALUE_IRI);
+        if (iri != null) {
+            terms.add(iri);
+        }
+        return terms;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + BulkMatchQuery.class.getSimpleName().hashCode();
+        result = prime * result + luceneQuery.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof BulkMatchQuery)) {
+            return false;
+        }
+        BulkMatchQuery other = (BulkMatchQuery) obj;
+        return this.luceneQuery.equals(other.luceneQuery);
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("Query: ").append(luceneQuery);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Computes the content keys stored in {@link SearchTabIndexField#CONTENT_KEY}. A key
+ * is a 128-bit hash of the ontology ID and the axiom (or entity) a document was
+ * created from, so that the documents of an axiom can be removed or replaced with a
+ * single term operation. Since the keys depend on the ontology ID, the index has to
+ * be re-keyed when the ID of an indexed ontology changes.
+ */
+public final class ContentKey {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private ContentKey() {
+        // NO-OP
+    }
+
+    /**
+     * Returns the key of the documents created from an axiom. The key of a declaration
+     * differs from the key of the entity document, which describes the entity for as
+     * long as it is in the signature of the ontology, declared or not.
+     */
+    public static String of(OWLOntologyID ontologyId, OWLAxiom axiom) {
+        return HASH_FUNCTION.newHasher()
+                .putString(ontologyId.toString(), StandardCharsets.UTF_8)
+                .putChar('\u0000')
+                .putString(axiom.toString(), StandardCharsets.UTF_8)
+                .hash().toString();
+    }
+
+    /**
+     * Returns the key of the document describing an entity.
+     */
+    public static String of(OWLOntologyID ontologyId, OWLEntity entity) {
+        return HASH_FUNCTION.newHasher()
+                .putString(ontologyId.toString(), StandardCharsets.UTF_8)
+                .putChar('\u0000')
+                .putString(entity.getEntityType().getName(), StandardCharsets.UTF_8)
+                .putChar('\u0000')
+                .putString(entity.getIRI().toString(), StandardCharsets.UTF_8)
+                .hash().toString();
+    }
+}
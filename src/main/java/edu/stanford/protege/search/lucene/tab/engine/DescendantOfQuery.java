@@ -0,0 +1,121 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+import org.protege.editor.search.lucene.IndexField;
+import org.protege.editor.search.lucene.LuceneSearcher;
+import org.protege.editor.search.lucene.QueryEvaluationException;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the descendants of a class in the asserted class hierarchy. The hierarchy is
+ * stored in the index as one document per edge (see {@link
+ * SearchTabIndexField#SUPERCLASS_IRI}), so it follows the incremental index updates
+ * like any other axiom. The query walks the hierarchy down one level per index
+ * search, looking up the children of a whole level with a single terms-in-set query.
+ */
+public class DescendantOfQuery extends BasicQuery {
+
+    private final String ancestorIri;
+    private final LuceneSearcher searcher;
+
+    private final String algebraString;
+
+    public DescendantOfQuery(String ancestorIri, LuceneSearcher searcher, String algebraString) {
+        this.ancestorIri = ancestorIri;
+        this.searcher = searcher;
+        this.algebraString = algebraString;
+    }
+
+    /**
+     * Returns the query of the direct subclasses of the ancestor, i.e., the first level
+     * of the walk.
+     */
+    @Override
+    public Query getLuceneQuery() {
+        return new TermQuery(new Term(SearchTabIndexField.SUPERCLASS_IRI, ancestorIri));
+    }
+
+    @Override
+    public LuceneSearcher getSearcher() {
+        return searcher;
+    }
+
+    @Override
+    public String getAlgebraString() {
+        return algebraString;
+    }
+
+    @Override
+    public Set<OWLEntity> evaluate(SearchProgressListener listener, AtomicBoolean stopSearch) throws QueryEvaluationException {
+        SearchDocumentHandler handler = new SearchDocumentHandler(searcher.getEditorKit());
+        Set<String> visited = new HashSet<>();
+        visited.add(ancestorIri);
+        List<BytesRef> level = new ArrayList<>();
+        level.add(new BytesRef(ancestorIri));
+        try {
+            while (!level.isEmpty()) {
+                if (stopSearch.get()) { // if should stop
+                    return handler.getSearchResults();
+                }
+                TopDocs hits = searcher.search(new TermInSetQuery(SearchTabIndexField.SUPERCLASS_IRI, level));
+                level = new ArrayList<>();
+                for (int i = 0; i < hits.scoreDocs.length; i++) {
+                    Document doc = searcher.find(hits.scoreDocs[i].doc);
+                    String iri = doc.get(IndexField.ENTITY_IRI);
+                    if (visited.add(iri)) { // equivalent classes form cycles
+                        handler.handle(doc);
+                        level.add(new BytesRef(iri));
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new QueryEvaluationException(e);
+        }
+        return handler.getSearchResults();
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + DescendantOfQuery.class.getSimpleName().hashCode();
+        result = prime * result + ancestorIri.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof DescendantOfQuery)) {
+            return false;
+        }
+        DescendantOfQuery other = (DescendantOfQuery) obj;
+        return this.ancestorIri.equals(other.ancestorIri);
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("Query: descendants of ").append(ancestorIri);
+        return sb.toString();
+    }
+}
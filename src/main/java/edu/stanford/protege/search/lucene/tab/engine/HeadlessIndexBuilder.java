@@ -0,0 +1,100 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.store.FSDirectory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.manchestersyntax.renderer.ManchesterOWLSyntaxOWLObjectRendererImpl;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.util.AnnotationValueShortFormProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds the search tab index of an ontology file without a running Protégé, e.g., as
+ * part of a release pipeline. By default, the index is written next to the ontology in
+ * <code>&lt;ontology file&gt;.lucene</code>, using the same generation layout as the
+ * index directories of the editor, which copies it into place the first time the
+ * ontology is opened.
+ * <p>
+ * Display names are rendered from <code>rdfs:label</code> annotations, falling back to
+ * the IRI short form. The index is marked as prebuilt, so that the editor re-renders it
+ * once with the renderer it is actually configured with.
+ * <p>
+ * Usage: <code>HeadlessIndexBuilder &lt;ontology file&gt; [&lt;output directory&gt;]</code>
+ */
+public class HeadlessIndexBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeadlessIndexBuilder.class);
+
+    public static final String PREBUILT_INDEX_SUFFIX = ".lucene";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: HeadlessIndexBuilder <ontology file> [<output directory>]");
+            System.exit(1);
+        }
+        Path ontologyFile = Paths.get(args[0]);
+        Path output = (args.length > 1) ? Paths.get(args[1]) : getPrebuiltIndexLocation(ontologyFile);
+        build(ontologyFile.toFile(), output);
+    }
+
+    /**
+     * Returns the location where the editor looks for a prebuilt index of the given
+     * ontology file.
+     */
+    public static Path getPrebuiltIndexLocation(Path ontologyFile) {
+        return ontologyFile.resolveSibling(ontologyFile.getFileName() + PREBUILT_INDEX_SUFFIX);
+    }
+
+    /**
+     * Loads the ontology, including its imports closure, and builds its index at the
+     * given location.
+     */
+    public static void build(File ontologyFile, Path output) throws OWLOntologyCreationException, IOException {
+        logger.info("Loading ontology from " + ontologyFile);
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLOntology ontology = manager.loadOntologyFromOntologyDocument(ontologyFile);
+        Set<OWLOntology> ontologies = ontology.getImportsClosure();
+
+        ManchesterOWLSyntaxOWLObjectRendererImpl renderer = new ManchesterOWLSyntaxOWLObjectRendererImpl();
+        renderer.setShortFormProvider(new AnnotationValueShortFormProvider(
+                Collections.singletonList(manager.getOWLDataFactory().getRDFSLabel()),
+                Collections.emptyMap(), manager));
+        SearchTabIndexer indexer = new SearchTabIndexer(iri -> findEntities(ontologies, iri), renderer::render);
+
+        IndexDirectoryLayout layout = new IndexDirectoryLayout(output);
+        Path generation = layout.newGeneration();
+        logger.info("Building index at " + generation);
+        SearchTabIndexDelegator delegator = SearchTabIndexDelegator.getInstance(FSDirectory.open(generation),
+                indexer.getIndexWriterConfig());
+        try {
+            indexer.doIndex(delegator, ontologies, progress -> logger.info("... {}%", progress));
+            delegator.commit(SearchTabIndexer.withPrebuiltMark(delegator.getCommitData(), true));
+        }
+        finally {
+            delegator.dispose();
+        }
+        layout.publish(generation);
+        layout.reclaim();
+        logger.info("... index is ready at " + output);
+    }
+
+    private static Set<OWLEntity> findEntities(Set<OWLOntology> ontologies, IRI iri) {
+        Set<OWLEntity> entities = new HashSet<>();
+        for (OWLOntology ontology : ontologies) {
+            entities.addAll(ontology.getEntitiesInSignature(iri));
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,105 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records how far an index build got, so that an interrupted build can continue
+ * from the last checkpoint instead of starting over. The checkpoint is stored in
+ * the user data of the Lucene commit that persisted the documents it covers.
+ */
+public class IndexBuildCheckpoint {
+
+    /**
+     * Version of the document layout. Increase it whenever documents gain or change
+     * fields, so that indexes built by an earlier version get rebuilt.
+     */
+    public static final int SCHEMA_VERSION = 9;
+
+    private static final String SCHEMA = "schema.version";
+    private static final String BUILD_STATE = "build.state";
+    private static final String BUILD_GUARD = "build.guard";
+    private static final String BUILD_ONTOLOGY = "build.ontology";
+    private static final String BUILD_POSITION = "build.position";
+
+    private static final String STATE_IN_PROGRESS = "in-progress";
+    private static final String STATE_COMPLETE = "complete";
+
+    private final boolean complete;
+    private final String guard;
+    private final int ontologyIndex;
+    private final long position;
+
+    private IndexBuildCheckpoint(boolean complete, String guard, int ontologyIndex, long position) {
+        this.complete = complete;
+        this.guard = guard;
+        this.ontologyIndex = ontologyIndex;
+        this.position = position;
+    }
+
+    public static IndexBuildCheckpoint inProgress(String guard, int ontologyIndex, long position) {
+        return new IndexBuildCheckpoint(false, guard, ontologyIndex, position);
+    }
+
+    public static IndexBuildCheckpoint complete(String guard) {
+        return new IndexBuildCheckpoint(true, guard, 0, 0);
+    }
+
+    /**
+     * Reads the checkpoint from the given commit data, or returns null if the commit
+     * was not made by a checkpointing build or uses an older document layout.
+     */
+    public static IndexBuildCheckpoint fromCommitData(Map<String, String> commitData) {
+        String state = commitData.get(BUILD_STATE);
+        if (state == null || !String.valueOf(SCHEMA_VERSION).equals(commitData.get(SCHEMA))) {
+            return null;
+        }
+        try {
+            return new IndexBuildCheckpoint(
+                    STATE_COMPLETE.equals(state),
+                    commitData.getOrDefault(BUILD_GUARD, ""),
+                    Integer.parseInt(commitData.getOrDefault(BUILD_ONTOLOGY, "0")),
+                    Long.parseLong(commitData.getOrDefault(BUILD_POSITION, "0")));
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public Map<String, String> toCommitData() {
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(SCHEMA, String.valueOf(SCHEMA_VERSION));
+        commitData.put(BUILD_STATE, complete ? STATE_COMPLETE : STATE_IN_PROGRESS);
+        commitData.put(BUILD_GUARD, guard);
+        commitData.put(BUILD_ONTOLOGY, String.valueOf(ontologyIndex));
+        commitData.put(BUILD_POSITION, String.valueOf(position));
+        return commitData;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns a summary of the indexed ontologies at the time the build started. A
+     * build is only resumed if the ontologies still produce the same guard.
+     */
+    public String getGuard() {
+        return guard;
+    }
+
+    /**
+     * Returns the position of the ontology being indexed in the build order.
+     */
+    public int getOntologyIndex() {
+        return ontologyIndex;
+    }
+
+    /**
+     * Returns the number of items (entities, then logical axioms) of the current
+     * ontology that are already persisted.
+     */
+    public long getPosition() {
+        return position;
+    }
+}
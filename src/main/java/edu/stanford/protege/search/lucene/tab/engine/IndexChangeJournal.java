@@ -0,0 +1,109 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An append-only log of the index content touched by changes that are applied but
+ * not yet committed. Every line names either a content key (<code>K</code>) whose
+ * documents were added or removed, or the IRI of an entity (<code>E</code>) whose
+ * documents were affected. The journal is truncated after each commit, so after a
+ * crash it lists exactly the content that may be out of date in the committed index.
+ * <p>
+ * Entries are written through to the operating system but not forced to the storage
+ * device, which survives a crash of the application at no fsync cost.
+ */
+public class IndexChangeJournal {
+
+    public static final String JOURNAL_FILE = "search-tab-changes.journal";
+
+    private static final String KEY_ENTRY = "K ";
+    private static final String ENTITY_ENTRY = "E ";
+
+    private final Path journalFile;
+
+    private final Set<String> contentKeys = new LinkedHashSet<>();
+
+    private final Set<String> entityIris = new LinkedHashSet<>();
+
+    private IndexChangeJournal(Path journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Opens the journal kept in the given index directory, reading the entries left
+     * over from a previous session.
+     */
+    public static IndexChangeJournal open(Path indexLocation) throws IOException {
+        IndexChangeJournal journal = new IndexChangeJournal(indexLocation.resolve(JOURNAL_FILE));
+        journal.read();
+        return journal;
+    }
+
+    public synchronized void append(Collection<String> keys, Collection<String> iris) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String key : keys) {
+                writer.write(KEY_ENTRY + key + "\n");
+            }
+            for (String iri : iris) {
+                writer.write(ENTITY_ENTRY + iri + "\n");
+            }
+        }
+        contentKeys.addAll(keys);
+        entityIris.addAll(iris);
+    }
+
+    /**
+     * Returns the content keys of the documents added or removed since the last commit.
+     */
+    public synchronized Set<String> getContentKeys() {
+        return new LinkedHashSet<>(contentKeys);
+    }
+
+    /**
+     * Returns the IRIs of the entities whose documents changed since the last commit.
+     */
+    public synchronized Set<String> getEntityIris() {
+        return new LinkedHashSet<>(entityIris);
+    }
+
+    public synchronized boolean isEmpty() {
+        return contentKeys.isEmpty() && entityIris.isEmpty();
+    }
+
+    /**
+     * Discards all the entries. Called once the changes they describe are committed.
+     */
+    public synchronized void clear() throws IOException {
+        Files.deleteIfExists(journalFile);
+        contentKeys.clear();
+        entityIris.clear();
+    }
+
+    private void read() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(KEY_ENTRY)) {
+                    contentKeys.add(line.substring(KEY_ENTRY.length()));
+                }
+                else if (line.startsWith(ENTITY_ENTRY)) {
+                    entityIris.add(line.substring(ENTITY_ENTRY.length()));
+                }
+                // A torn last line from a crash is ignored
+            }
+        }
+    }
+}
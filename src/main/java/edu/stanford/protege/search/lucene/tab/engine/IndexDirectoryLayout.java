@@ -0,0 +1,150 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Organizes the index record location of an ontology into numbered index
+ * generations (<code>gen-1</code>, <code>gen-2</code>, ...). A small pointer file
+ * names the generation that is currently in use, and it is replaced atomically
+ * when a rebuilt generation gets published. Locations created before generations
+ * were introduced have no pointer file and hold the index files directly.
+ */
+public class IndexDirectoryLayout {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexDirectoryLayout.class);
+
+    private static final String CURRENT_FILE = "CURRENT";
+    private static final String GENERATION_PREFIX = "gen-";
+
+    private final Path recordLocation;
+
+    public IndexDirectoryLayout(Path recordLocation) {
+        this.recordLocation = recordLocation;
+    }
+
+    public Path getRecordLocation() {
+        return recordLocation;
+    }
+
+    /**
+     * Returns the location of the generation currently in use.
+     */
+    public Path getCurrentLocation() throws IOException {
+        Path pointer = recordLocation.resolve(CURRENT_FILE);
+        if (Files.exists(pointer)) {
+            String generation = new String(Files.readAllBytes(pointer), StandardCharsets.UTF_8).trim();
+            Path location = recordLocation.resolve(generation);
+            if (Files.isDirectory(location)) {
+                return location;
+            }
+            logger.warn("Index generation {} is missing, falling back to {}", generation, recordLocation);
+        }
+        return recordLocation;
+    }
+
+    /**
+     * Creates an empty directory for the next index generation. The generation is
+     * not visible to {@link #getCurrentLocation()} until it gets published.
+     */
+    public Path newGeneration() throws IOException {
+        Files.createDirectories(recordLocation);
+        int next = 1;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(recordLocation, GENERATION_PREFIX + "*")) {
+            for (Path path : stream) {
+                next = Math.max(next, getGenerationNumber(path) + 1);
+            }
+        }
+        return Files.createDirectory(recordLocation.resolve(GENERATION_PREFIX + next));
+    }
+
+    /**
+     * Makes the given generation the current one. The pointer file is written to a
+     * temporary file first and then moved over the old pointer in one step, so a
+     * crash leaves either the old or the new generation in place.
+     */
+    public void publish(Path generation) throws IOException {
+        Path temp = recordLocation.resolve(CURRENT_FILE + ".tmp");
+        Files.write(temp, generation.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, recordLocation.resolve(CURRENT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deletes every generation other than the current one, including unpublished
+     * generations left over by an interrupted rebuild and the index files of a
+     * location that predates the generation layout.
+     */
+    public void reclaim() throws IOException {
+        Path current = getCurrentLocation();
+        if (!Files.isDirectory(recordLocation)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(recordLocation)) {
+            for (Path path : stream) {
+                if (path.equals(current)) {
+                    continue;
+                }
+                String name = path.getFileName().toString();
+                if (Files.isDirectory(path) && name.startsWith(GENERATION_PREFIX)) {
+                    deleteRecursively(path);
+                }
+                else if (!current.equals(recordLocation) && isLegacyIndexFile(name)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes an unpublished generation, e.g., after a rebuild was abandoned.
+     */
+    public void discard(Path generation) throws IOException {
+        if (!generation.equals(getCurrentLocation())) {
+            deleteRecursively(generation);
+        }
+    }
+
+    private static boolean isLegacyIndexFile(String name) {
+        return name.startsWith("segments") || name.startsWith("_") || name.equals("write.lock")
+                || name.equals(IndexChangeJournal.JOURNAL_FILE);
+    }
+
+    private static int getGenerationNumber(Path path) {
+        try {
+            return Integer.parseInt(path.getFileName().toString().substring(GENERATION_PREFIX.length()));
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Constants;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Decides where an index lives, based on how large the index is rather than on the
+ * size of the ontology file it comes from. An index that fits the in-memory budget
+ * may be kept on the heap; otherwise it is stored on disk, memory-mapped where the
+ * platform supports it, and preloaded into the page cache if it fits the preload
+ * budget, so that the first queries do not page the index in from disk.
+ */
+public class IndexDirectoryStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexDirectoryStrategy.class);
+
+    /**
+     * Average size in bytes of the documents generated for one indexed item (entity or
+     * axiom). Used to estimate the size of an index that was never built.
+     */
+    private static final long ESTIMATED_BYTES_PER_ITEM = 400;
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private final long inMemoryBudget; // in bytes
+    private final long preloadBudget; // in bytes
+
+    /**
+     * @param inMemoryBudget the maximum index size in MB to keep on the heap
+     * @param preloadBudget the maximum index size in MB to preload into memory
+     */
+    public IndexDirectoryStrategy(int inMemoryBudget, int preloadBudget) {
+        this.inMemoryBudget = inMemoryBudget * MEGABYTE;
+        this.preloadBudget = preloadBudget * MEGABYTE;
+    }
+
+    /**
+     * Checks if an index of the given size fits the in-memory budget.
+     */
+    public boolean fitsInMemory(long indexSize) {
+        return indexSize <= inMemoryBudget;
+    }
+
+    public Directory openInMemory() {
+        return new RAMDirectory();
+    }
+
+    /**
+     * Opens an in-memory copy of the index at the given location.
+     */
+    public Directory openInMemory(Path source) throws IOException {
+        try (FSDirectory sourceDirectory = FSDirectory.open(source)) {
+            return new RAMDirectory(sourceDirectory, IOContext.READONCE);
+        }
+    }
+
+    /**
+     * Opens the index at the given location. Memory mapping is only used on 64-bit
+     * JVMs that can unmap buffers, since otherwise mapped files stay open until they
+     * are garbage collected and exhaust the address space of large indexes.
+     */
+    public Directory openOnDisk(Path location, long indexSize) throws IOException {
+        if (Constants.JRE_IS_64BIT && MMapDirectory.UNMAP_SUPPORTED) {
+            MMapDirectory directory = new MMapDirectory(location);
+            directory.setPreload(indexSize <= preloadBudget);
+            logger.info("... using memory-mapped index directory (preload: {})", directory.getPreload());
+            return directory;
+        }
+        return FSDirectory.open(location); // picks the best non-mapping implementation
+    }
+
+    /**
+     * Returns the total size in bytes of the index files at the given location, or
+     * zero if there are none.
+     */
+    public static long measureIndexSize(Path location) throws IOException {
+        if (!Files.isDirectory(location)) {
+            return 0;
+        }
+        long size = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(location)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    size += Files.size(path);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the size in bytes of the index built from the given ontologies, for
+     * when there is no index to measure yet.
+     */
+    public static long estimateIndexSize(Iterable<OWLOntology> ontologies) {
+        long items = 0;
+        for (OWLOntology ontology : ontologies) {
+            items += ontology.getSignature().size()
+                    + ontology.getLogicalAxiomCount()
+                    + ontology.getAxiomCount(AxiomType.ANNOTATION_ASSERTION);
+        }
+        return items * ESTIMATED_BYTES_PER_ITEM;
+    }
+}
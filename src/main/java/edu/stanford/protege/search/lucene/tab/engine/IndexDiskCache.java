@@ -0,0 +1,250 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.Lock;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the index directories under a common location within a disk budget. The cache
+ * entries are the index record locations of the ontologies and the entries of the
+ * {@link SharedIndexStore}. The modification time of an entry records when it was last
+ * opened, and when the entries exceed the budget, the least recently opened ones are
+ * deleted first.
+ * <p>
+ * Only directories that hold an index are considered, and an entry whose index is
+ * locked by a writer, e.g., because another workspace has it open, is never deleted.
+ * An entry is deleted by first moving it aside under a trash name in one step and then
+ * deleting the moved copy, so a deletion that stops partway never leaves a broken
+ * entry under its original name; the trash is cleared by the next eviction. An entry
+ * whose files are held open cannot be moved on some platforms and is skipped.
+ */
+public class IndexDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexDiskCache.class);
+
+    private static final String SHARED_INDEX_STORE = "shared";
+
+    private static final String TRASH_PREFIX = "trash-";
+
+    private final Path cacheLocation;
+
+    public IndexDiskCache(Path cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
+    public Path getSharedIndexStoreLocation() {
+        return cacheLocation.resolve(SHARED_INDEX_STORE);
+    }
+
+    /**
+     * Marks the given entry as opened just now.
+     */
+    public static void touch(Path entry) {
+        try {
+            if (Files.isDirectory(entry)) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+        }
+        catch (IOException e) {
+            logger.debug("Failed to update the last opened time of " + entry, e);
+        }
+    }
+
+    /**
+     * Returns the total size in bytes of all the entries.
+     */
+    public long getSize() throws IOException {
+        long size = 0;
+        for (Path entry : getEntries()) {
+            size += sizeOf(entry);
+        }
+        return size;
+    }
+
+    /**
+     * Deletes the least recently opened entries until the entries fit the given budget.
+     *
+     * @param budget the disk budget in bytes
+     * @param inUse an entry that must be kept, e.g., the index record location of the
+     *              active ontology
+     * @return the number of bytes reclaimed
+     */
+    public long evict(long budget, Path inUse) throws IOException {
+        clearTrash();
+        List<Path> entries = getEntries();
+        long total = 0;
+        List<Long> sizes = new ArrayList<>();
+        for (Path entry : entries) {
+            long size = sizeOf(entry);
+            sizes.add(size);
+            total += size;
+        }
+        if (total <= budget) {
+            return 0;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> lastOpened(entries.get(i))));
+        long reclaimed = 0;
+        for (int i : order) {
+            if (total - reclaimed <= budget) {
+                break;
+            }
+            Path entry = entries.get(i);
+            if (entry.equals(inUse) || (!isSharedEntry(entry) && isLocked(entry))) {
+                continue;
+            }
+            logger.info("... evicting index directory {} ({} MB)", entry, sizes.get(i) / (1024 * 1024));
+            try {
+                discard(entry);
+                reclaimed += sizes.get(i);
+            }
+            catch (IOException e) {
+                logger.warn("Failed to evict index directory " + entry, e);
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Deletes the given entry after moving it aside in one step, see the class
+     * description. Nothing is deleted if the entry cannot be moved.
+     */
+    public static void discard(Path entry) throws IOException {
+        Path trash = entry.resolveSibling(TRASH_PREFIX + entry.getFileName() + "-" + System.nanoTime());
+        Files.move(entry, trash, StandardCopyOption.ATOMIC_MOVE);
+        IndexDirectoryLayout.deleteRecursively(trash);
+    }
+
+    /*
+     * Deletes the entries that a previous eviction moved aside but did not finish
+     * deleting.
+     */
+    private void clearTrash() throws IOException {
+        for (Path location : new Path[] { cacheLocation, getSharedIndexStoreLocation() }) {
+            if (!Files.isDirectory(location)) {
+                continue;
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(location, TRASH_PREFIX + "*")) {
+                for (Path trash : stream) {
+                    try {
+                        IndexDirectoryLayout.deleteRecursively(trash);
+                    }
+                    catch (IOException e) {
+                        logger.debug("Failed to clear " + trash, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<Path> getEntries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        if (!Files.isDirectory(cacheLocation)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheLocation, Files::isDirectory)) {
+            for (Path path : stream) {
+                if (path.getFileName().toString().equals(SHARED_INDEX_STORE)) {
+                    try (DirectoryStream<Path> shared = Files.newDirectoryStream(path, Files::isDirectory)) {
+                        for (Path entry : shared) {
+                            if (!isTrash(entry) && !SharedIndexStore.isTemporary(entry)) {
+                                entries.add(entry);
+                            }
+                        }
+                    }
+                }
+                else if (!isTrash(path)
+                        && (holdsIndex(path) || holdsIndex(new IndexDirectoryLayout(path).getCurrentLocation()))) {
+                    entries.add(path);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static boolean isTrash(Path location) {
+        return location.getFileName().toString().startsWith(TRASH_PREFIX);
+    }
+
+    private static boolean holdsIndex(Path location) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(location, "segments*")) {
+            return stream.iterator().hasNext();
+        }
+    }
+
+    private boolean isSharedEntry(Path entry) {
+        return entry.getParent().equals(getSharedIndexStoreLocation());
+    }
+
+    /*
+     * Checks if a writer holds the lock of the index in the entry. Lucene's native
+     * locks detect writers of this and of other processes alike. A writer creates the
+     * lock file when it first opens the index, so without one there is nothing to
+     * check, and checking would leave a lock file behind.
+     */
+    private static boolean isLocked(Path entry) {
+        Path location;
+        try {
+            location = new IndexDirectoryLayout(entry).getCurrentLocation();
+        }
+        catch (IOException e) {
+            logger.debug("Failed to check the index lock of " + entry, e);
+            return true;
+        }
+        if (!Files.exists(location.resolve(IndexWriter.WRITE_LOCK_NAME))) {
+            return false;
+        }
+        try (Directory directory = FSDirectory.open(location);
+             Lock lock = directory.obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+            return false;
+        }
+        catch (LockObtainFailedException e) {
+            return true;
+        }
+        catch (IOException e) {
+            logger.debug("Failed to check the index lock of " + entry, e);
+            return true;
+        }
+    }
+
+    private static FileTime lastOpened(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        }
+        catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long sizeOf(Path root) throws IOException {
+        long[] size = { 0 };
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                size[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+}
@@ -0,0 +1,119 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The optional fields that the indexer writes for selected annotation properties:
+ * n-grams of the annotation text (see {@link SearchTabIndexField#ANNOTATION_TEXT_NGRAM})
+ * and a field of their own holding the annotation text of a single property (see
+ * {@link SearchTabIndexField#getPropertyTextField(String)}). The options an index was
+ * built with are stored in its commit data, so that queries only use the fields the
+ * index actually has and the index gets rebuilt when the options change.
+ */
+public final class IndexFieldOptions {
+
+    public static final IndexFieldOptions NONE = new IndexFieldOptions(Collections.emptySet(), Collections.emptySet());
+
+    private static final String NGRAM_PROPERTIES = "fields.ngram";
+    private static final String PROPERTY_FIELD_PROPERTIES = "fields.property";
+
+    private final Set<String> nGramProperties;
+    private final Set<String> propertyFieldProperties;
+
+    /**
+     * @param nGramProperties the IRIs of the annotation properties whose annotation
+     *                        text is indexed with n-grams
+     * @param propertyFieldProperties the IRIs of the annotation properties whose
+     *                                annotation text is indexed in a field of its own
+     */
+    public IndexFieldOptions(Set<String> nGramProperties, Set<String> propertyFieldProperties) {
+        this.nGramProperties = Collections.unmodifiableSet(new HashSet<>(nGramProperties));
+        this.propertyFieldProperties = Collections.unmodifiableSet(new HashSet<>(propertyFieldProperties));
+    }
+
+    public static IndexFieldOptions fromPreferences() {
+        return new IndexFieldOptions(SearchTabIndexPreferences.getNGramProperties(),
+                SearchTabIndexPreferences.getPropertyFieldProperties());
+    }
+
+    /**
+     * Reads the options that an index was built with from its commit data.
+     */
+    public static IndexFieldOptions fromCommitData(Map<String, String> commitData) {
+        return new IndexFieldOptions(parse(commitData.get(NGRAM_PROPERTIES)),
+                parse(commitData.get(PROPERTY_FIELD_PROPERTIES)));
+    }
+
+    /**
+     * Returns a copy of the given commit data that records these options.
+     */
+    public Map<String, String> withCommitData(Map<String, String> commitData) {
+        Map<String, String> copy = new HashMap<>(commitData);
+        copy.put(NGRAM_PROPERTIES, format(nGramProperties));
+        copy.put(PROPERTY_FIELD_PROPERTIES, format(propertyFieldProperties));
+        return copy;
+    }
+
+    public Set<String> getNGramProperties() {
+        return nGramProperties;
+    }
+
+    public Set<String> getPropertyFieldProperties() {
+        return propertyFieldProperties;
+    }
+
+    public boolean hasNGrams(String propertyIri) {
+        return nGramProperties.contains(propertyIri);
+    }
+
+    public boolean hasPropertyField(String propertyIri) {
+        return propertyFieldProperties.contains(propertyIri);
+    }
+
+    /**
+     * Returns a canonical text form of the options, e.g., to tell apart indexes built
+     * with different options.
+     */
+    public String getValue() {
+        return format(nGramProperties) + "\u0000" + format(propertyFieldProperties);
+    }
+
+    private static Set<String> parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(Arrays.asList(value.split(" ")));
+    }
+
+    private static String format(Set<String> propertyIris) {
+        List<String> sorted = new ArrayList<>(propertyIris);
+        Collections.sort(sorted);
+        return String.join(" ", sorted);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof IndexFieldOptions)) {
+            return false;
+        }
+        IndexFieldOptions other = (IndexFieldOptions) obj;
+        return nGramProperties.equals(other.nGramProperties)
+                && propertyFieldProperties.equals(other.propertyFieldProperties);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(nGramProperties, propertyFieldProperties);
+    }
+}
@@ -0,0 +1,36 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.search.IndexSearcher;
+
+import java.io.IOException;
+
+/**
+ * A point-in-time view of the index. All the Lucene searches issued through the
+ * snapshot see the same reader, regardless of the updates committed while the
+ * snapshot is open. The snapshot must be closed to let the reader go.
+ */
+public class IndexSnapshot implements AutoCloseable {
+
+    private final SearchTabIndexDelegator delegator;
+
+    private final IndexSearcher searcher;
+
+    private boolean closed = false;
+
+    IndexSnapshot(SearchTabIndexDelegator delegator, IndexSearcher searcher) {
+        this.delegator = delegator;
+        this.searcher = searcher;
+    }
+
+    public IndexSearcher getSearcher() {
+        return searcher;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            delegator.releaseSnapshot(searcher);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLAxiomChange;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects ontology changes that are waiting to be applied to the index. Changes
+ * arriving in quick succession are merged into one batch: the flush action runs only
+ * after no change has arrived for the quiet period, or once the oldest pending change
+ * has waited for the maximum delay. Adding and then removing the same axiom (or the
+ * other way round) before a flush cancels out and never reaches the index.
+ */
+public class IndexUpdateQueue {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-tab-index-update-queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<ChangeKey, OWLAxiomChange> pendingChanges = new LinkedHashMap<>();
+
+    private final Runnable flushAction;
+
+    private final long quietPeriod;
+
+    private final long maxDelay;
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    private long firstPendingTime;
+
+    /**
+     * @param flushAction the action that drains and applies the pending changes
+     * @param quietPeriod the time in milliseconds without new changes before a flush
+     * @param maxDelay the time in milliseconds after which pending changes are flushed
+     *                 even if changes keep arriving
+     */
+    public IndexUpdateQueue(Runnable flushAction, long quietPeriod, long maxDelay) {
+        this.flushAction = flushAction;
+        this.quietPeriod = quietPeriod;
+        this.maxDelay = maxDelay;
+    }
+
+    public synchronized void enqueue(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (!change.isAxiomChange()) {
+                continue; // the index is built from axioms only
+            }
+            OWLAxiomChange axiomChange = (OWLAxiomChange) change;
+            ChangeKey key = new ChangeKey(change.getOntology().getOntologyID(), axiomChange.getAxiom());
+            OWLAxiomChange pendingChange = pendingChanges.get(key);
+            if (pendingChange != null && isAddition(pendingChange) != isAddition(axiomChange)) {
+                pendingChanges.remove(key);
+            }
+            else {
+                pendingChanges.put(key, axiomChange);
+            }
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Removes and returns all the pending changes in the order they arrived.
+     */
+    public synchronized List<OWLOntologyChange> drain() {
+        List<OWLOntologyChange> changes = new ArrayList<>(pendingChanges.values());
+        pendingChanges.clear();
+        cancelFlush();
+        return changes;
+    }
+
+    /**
+     * Discards all the pending changes, e.g., when the index they target is closed.
+     */
+    public synchronized void clear() {
+        pendingChanges.clear();
+        cancelFlush();
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingChanges.isEmpty();
+    }
+
+    public void dispose() {
+        clear();
+        scheduler.shutdownNow();
+    }
+
+    private void scheduleFlush() {
+        if (pendingChanges.isEmpty()) {
+            cancelFlush();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (scheduledFlush == null) {
+            firstPendingTime = now;
+        }
+        else {
+            scheduledFlush.cancel(false);
+        }
+        long delay = Math.min(quietPeriod, Math.max(0, firstPendingTime + maxDelay - now));
+        scheduledFlush = scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        synchronized (this) {
+            scheduledFlush = null;
+        }
+        flushAction.run();
+    }
+
+    private void cancelFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private static boolean isAddition(OWLAxiomChange change) {
+        return change instanceof AddAxiom;
+    }
+
+    private static final class ChangeKey {
+
+        private final OWLOntologyID ontologyId;
+        private final OWLAxiom axiom;
+
+        private ChangeKey(OWLOntologyID ontologyId, OWLAxiom axiom) {
+            this.ontologyId = ontologyId;
+            this.axiom = axiom;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ChangeKey)) {
+                return false;
+            }
+            ChangeKey other = (ChangeKey) obj;
+            return ontologyId.equals(other.ontologyId) && axiom.equals(other.axiom);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ontologyId, axiom);
+        }
+    }
+}
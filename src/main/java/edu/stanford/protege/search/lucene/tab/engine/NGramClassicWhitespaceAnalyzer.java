@@ -0,0 +1,22 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.analysis.ngram.NGramTokenFilter;
+
+/**
+ * Analyzes text like {@link ClassicWhitespaceAnalyzer} and then breaks every token
+ * into all its substrings of {@link #MIN_GRAM} to {@link #MAX_GRAM} characters, so
+ * that a substring of a token can be looked up as a single term.
+ */
+public class NGramClassicWhitespaceAnalyzer extends ClassicWhitespaceAnalyzer {
+
+    public static final int MIN_GRAM = 3;
+
+    public static final int MAX_GRAM = 12;
+
+    @Override
+    protected TokenStreamComponents createComponents(final String fieldName) {
+        TokenStreamComponents components = super.createComponents(fieldName);
+        return new TokenStreamComponents(components.getTokenizer(),
+                new NGramTokenFilter(components.getTokenStream(), MIN_GRAM, MAX_GRAM));
+    }
+}
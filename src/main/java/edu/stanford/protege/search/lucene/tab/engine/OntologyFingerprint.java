@@ -0,0 +1,141 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An order-independent fingerprint of the axioms of a set of ontologies. Each axiom
+ * contributes a 128-bit hash of itself and its ontology ID, and the hashes are summed
+ * up, so the fingerprint can be kept up to date from the change stream in O(changes):
+ * an added axiom adds its hash and a removed axiom subtracts it again.
+ * <p>
+ * The fingerprint of the content applied to an index is stored in the user data of
+ * every commit that can vouch for it, so that an index can be reused right away when
+ * the same ontologies are opened again. A commit that cannot vouch for the index
+ * content drops the fingerprint instead.
+ */
+public final class OntologyFingerprint {
+
+    private static final String FINGERPRINT = "ontology.fingerprint";
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private long high;
+    private long low;
+    private long axiomCount;
+
+    private OntologyFingerprint(long high, long low, long axiomCount) {
+        this.high = high;
+        this.low = low;
+        this.axiomCount = axiomCount;
+    }
+
+    /**
+     * Computes the fingerprint of the given ontologies from scratch.
+     */
+    public static OntologyFingerprint of(Collection<OWLOntology> ontologies) {
+        OntologyFingerprint fingerprint = new OntologyFingerprint(0, 0, 0);
+        for (OWLOntology ontology : ontologies) {
+            OWLOntologyID ontologyId = ontology.getOntologyID();
+            fingerprint.add(hash(ontologyId.toString(), ""), 1);
+            for (OWLAxiom axiom : ontology.getAxioms()) {
+                fingerprint.add(ontologyId, axiom, 1);
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Restores a fingerprint from its value, or returns null if the value is missing or
+     * malformed.
+     */
+    public static OntologyFingerprint parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split("-");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new OntologyFingerprint(Long.parseUnsignedLong(parts[0], 16), Long.parseUnsignedLong(parts[1], 16),
+                    Long.parseLong(parts[2]));
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the axioms added by the given changes and subtracts the removed ones. Other
+     * kinds of changes are ignored.
+     */
+    public synchronized void apply(List<? extends OWLOntologyChange> changes) {
+        for (OWLOntologyChange change : changes) {
+            if (change instanceof AddAxiom) {
+                add(change.getOntology().getOntologyID(), change.getAxiom(), 1);
+            }
+            else if (change instanceof RemoveAxiom) {
+                add(change.getOntology().getOntologyID(), change.getAxiom(), -1);
+            }
+        }
+    }
+
+    public synchronized String getValue() {
+        return String.format("%016x-%016x-%d", high, low, axiomCount);
+    }
+
+    /**
+     * Returns the fingerprint value stored in the given commit data, or null if there
+     * is none.
+     */
+    public static String fromCommitData(Map<String, String> commitData) {
+        return commitData.get(FINGERPRINT);
+    }
+
+    /**
+     * Returns a copy of the given commit data that holds the given fingerprint value, or
+     * no fingerprint at all if it is null.
+     */
+    public static Map<String, String> withFingerprint(Map<String, String> commitData, String fingerprint) {
+        Map<String, String> copy = new HashMap<>(commitData);
+        if (fingerprint != null) {
+            copy.put(FINGERPRINT, fingerprint);
+        }
+        else {
+            copy.remove(FINGERPRINT);
+        }
+        return copy;
+    }
+
+    private void add(OWLOntologyID ontologyId, OWLAxiom axiom, int sign) {
+        add(hash(ontologyId.toString(), axiom.toString()), sign);
+        axiomCount += sign;
+    }
+
+    private void add(ByteBuffer hash, int sign) {
+        high += sign * hash.getLong(0);
+        low += sign * hash.getLong(8);
+    }
+
+    private static ByteBuffer hash(String ontologyId, String content) {
+        return ByteBuffer.wrap(HASH_FUNCTION.newHasher()
+                .putString(ontologyId, StandardCharsets.UTF_8)
+                .putChar('\u0000')
+                .putString(content, StandardCharsets.UTF_8)
+                .hash().asBytes());
+    }
+}
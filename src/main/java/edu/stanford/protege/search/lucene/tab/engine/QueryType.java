@@ -2,9 +2,11 @@ package edu.stanford.protege.search.lucene.tab.engine;
 
 import org.semanticweb.owlapi.model.OWLAnnotationProperty;
 import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLObject;
 import org.semanticweb.owlapi.model.OWLObjectProperty;
 import org.semanticweb.owlapi.util.CollectionFactory;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -58,7 +60,10 @@ public final class QueryType {
 
     public static List<QueryType> getTypesForOWLObject(OWLObject owlObject) {
         List<QueryType> types = new ArrayList<>();
-        if (owlObject instanceof OWLDataProperty) {
+        if (isSubClassOf(owlObject)) {
+            types.addAll(HierarchyQueryTypes);
+        }
+        else if (owlObject instanceof OWLDataProperty) {
             types.addAll(ValueQueryTypes);
             types.addAll(NonValueQueryTypes);
         }
@@ -72,6 +77,15 @@ public final class QueryType {
         return types; 
     }
 
+    /**
+     * Checks if the given object is the placeholder property <code>rdfs:subClassOf</code>,
+     * under which the queries on the asserted class hierarchy are offered.
+     */
+    public static boolean isSubClassOf(OWLObject owlObject) {
+        return owlObject instanceof OWLEntity
+                && ((OWLEntity) owlObject).getIRI().equals(OWLRDFVocabulary.RDFS_SUBCLASS_OF.getIRI());
+    }
+
     public static QueryType valueOf(String queryTypeName) {
         if(queryTypeName.equals(CONTAINS.name)) {
             return CONTAINS;
@@ -81,6 +95,22 @@ public final class QueryType {
             return ENDS_WITH;
         } else if(queryTypeName.equals(EXACT_MATCH.name)) {
             return EXACT_MATCH;
+        } else if(queryTypeName.equals(BULK_MATCH.name)) {
+            return BULK_MATCH;
+        } else if(queryTypeName.equals(GREATER_THAN.name)) {
+            return GREATER_THAN;
+        } else if(queryTypeName.equals(LESS_THAN.name)) {
+            return LESS_THAN;
+        } else if(queryTypeName.equals(BETWEEN.name)) {
+            return BETWEEN;
+        } else if(queryTypeName.equals(REGEX.name)) {
+            return REGEX;
+        } else if(queryTypeName.equals(WILDCARD.name)) {
+            return WILDCARD;
+        } else if(queryTypeName.equals(FUZZY.name)) {
+            return FUZZY;
+        } else if(queryTypeName.equals(DESCENDANT_OF.name)) {
+            return DESCENDANT_OF;
         } else if(queryTypeName.equals(PROPERTY_VALUE_ABSENT.name)) {
             return PROPERTY_VALUE_ABSENT;
         } else if(queryTypeName.equals(PROPERTY_VALUE_PRESENT.name)) {
@@ -106,6 +136,14 @@ public final class QueryType {
     public static final QueryType STARTS_WITH = getInstance("StartsWithQuery", "starts with", true, false, false);
     public static final QueryType ENDS_WITH = getInstance("EndsWithQuery", "ends with", true, false, false);
     public static final QueryType EXACT_MATCH = getInstance("ExactMatchQuery", "exact match", true, false, false);
+    public static final QueryType BULK_MATCH = getInstance("BulkMatchQuery", "matches any of", true, false, false);
+    public static final QueryType GREATER_THAN = getInstance("GreaterThanQuery", "greater than", true, false, false);
+    public static final QueryType LESS_THAN = getInstance("LessThanQuery", "less than", true, false, false);
+    public static final QueryType BETWEEN = getInstance("BetweenQuery", "between", true, false, false);
+    public static final QueryType REGEX = getInstance("RegexQuery", "matches regex", true, false, false);
+    public static final QueryType WILDCARD = getInstance("WildcardQuery", "matches wildcard", true, false, false);
+    public static final QueryType FUZZY = getInstance("FuzzyQuery", "is similar to", true, false, false);
+    public static final QueryType DESCENDANT_OF = getInstance("DescendantOfQuery", "descendant of", true, false, false);
     public static final QueryType PROPERTY_VALUE_ABSENT = getInstance("PropertyValueAbsentQuery", "property value absent", false, true, false);
     public static final QueryType PROPERTY_VALUE_PRESENT = getInstance("PropertyValuePresentQuery", "property value present", false, true, false);
     public static final QueryType PROPERTY_RESTRICTION_ABSENT = getInstance("PropertyRestrictionAbsentQuery", "property restriction absent", false, true, false);
@@ -118,6 +156,13 @@ public final class QueryType {
             STARTS_WITH,
             ENDS_WITH,
             EXACT_MATCH,
+            BULK_MATCH,
+            GREATER_THAN,
+            LESS_THAN,
+            BETWEEN,
+            REGEX,
+            WILDCARD,
+            FUZZY,
             PROPERTY_VALUE_ABSENT,
             PROPERTY_VALUE_PRESENT,
             PROPERTY_RESTRICTION_ABSENT,
@@ -128,7 +173,14 @@ public final class QueryType {
             CONTAINS,
             STARTS_WITH,
             ENDS_WITH,
-            EXACT_MATCH);
+            EXACT_MATCH,
+            BULK_MATCH,
+            GREATER_THAN,
+            LESS_THAN,
+            BETWEEN,
+            REGEX,
+            WILDCARD,
+            FUZZY);
 
     public static final List<QueryType> NonValueQueryTypes = CollectionFactory.list(
             PROPERTY_VALUE_ABSENT,
@@ -136,5 +188,7 @@ public final class QueryType {
             PROPERTY_RESTRICTION_ABSENT,
             PROPERTY_RESTRICTION_PRESENT);
 
+    public static final List<QueryType> HierarchyQueryTypes = CollectionFactory.list(DESCENDANT_OF);
+
     public static final List<QueryType> BooleanQueryTypes = CollectionFactory.list(IS);
 }
@@ -0,0 +1,167 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+import org.protege.editor.search.lucene.IndexField;
+import org.protege.editor.search.lucene.LuceneSearcher;
+import org.protege.editor.search.lucene.LuceneUtils;
+import org.protege.editor.search.lucene.QueryEvaluationException;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the entities having a numeric or date value of a property within a range.
+ * A bound such as <code>2024</code> reads as a number and could be meant as a year,
+ * hence whether numbers or dates are compared is resolved from the datatypes that the
+ * values of the property were indexed with (see {@link
+ * SearchTabIndexField#ANNOTATION_DATATYPE}) when the query is evaluated. Bounds that
+ * cannot be compared with the indexed values are rejected.
+ */
+public class RangeQuery extends BasicQuery {
+
+    private final String propertyIri;
+
+    private final Query numberQuery; // null if the bounds are not numbers
+    private final Query dateTimeQuery; // null if the bounds are not dates
+
+    private final LuceneSearcher searcher;
+
+    private final String algebraString;
+
+    public RangeQuery(String propertyIri, Query numberQuery, Query dateTimeQuery, LuceneSearcher searcher,
+            String algebraString) {
+        this.propertyIri = propertyIri;
+        this.numberQuery = numberQuery;
+        this.dateTimeQuery = dateTimeQuery;
+        this.searcher = searcher;
+        this.algebraString = algebraString;
+    }
+
+    /**
+     * Returns the query on all the kinds of values that the bounds can be compared
+     * with, regardless of the datatypes of the property values.
+     */
+    @Override
+    public Query getLuceneQuery() {
+        List<Query> rangeQueries = new ArrayList<>();
+        if (numberQuery != null) {
+            rangeQueries.add(numberQuery);
+        }
+        if (dateTimeQuery != null) {
+            rangeQueries.add(dateTimeQuery);
+        }
+        return createPropertyQuery(rangeQueries);
+    }
+
+    @Override
+    public LuceneSearcher getSearcher() {
+        return searcher;
+    }
+
+    @Override
+    public String getAlgebraString() {
+        return algebraString;
+    }
+
+    @Override
+    public Set<OWLEntity> evaluate(SearchProgressListener listener, AtomicBoolean stopSearch) throws QueryEvaluationException {
+        SearchDocumentHandler handler = new SearchDocumentHandler(searcher.getEditorKit());
+        try {
+            boolean hasNumbers = hasValues(TypedLiteralValues.getNumericDatatypes());
+            boolean hasDates = hasValues(TypedLiteralValues.getDateDatatypes());
+            List<Query> rangeQueries = new ArrayList<>();
+            if (hasNumbers && numberQuery != null) {
+                rangeQueries.add(numberQuery);
+            }
+            if (hasDates && dateTimeQuery != null) {
+                rangeQueries.add(dateTimeQuery);
+            }
+            if (rangeQueries.isEmpty()) {
+                if (hasNumbers || hasDates) {
+                    throw new QueryEvaluationException(new IllegalArgumentException(String.format(
+                            "The values of %s are %s, the bounds of '%s' cannot be compared with them",
+                            propertyIri, hasNumbers ? "numbers" : "dates", algebraString)));
+                }
+                return handler.getSearchResults(); // no value to compare with
+            }
+            TopDocs hits = searcher.search(createPropertyQuery(rangeQueries));
+            for (int i = 0; i < hits.scoreDocs.length; i++) {
+                if (stopSearch.get()) { // if should stop
+                    return handler.getSearchResults();
+                }
+                Document doc = searcher.find(hits.scoreDocs[i].doc);
+                handler.handle(doc);
+                if (listener != null) {
+                    listener.fireSearchingProgressed((i * 100) / hits.scoreDocs.length);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new QueryEvaluationException(e);
+        }
+        return handler.getSearchResults();
+    }
+
+    private boolean hasValues(Set<String> datatypes) throws IOException {
+        List<BytesRef> terms = new ArrayList<>();
+        for (String datatype : datatypes) {
+            terms.add(new BytesRef(datatype));
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, propertyIri), Occur.MUST);
+        builder.add(new TermInSetQuery(SearchTabIndexField.ANNOTATION_DATATYPE, terms), Occur.MUST);
+        return searcher.search(builder.build()).totalHits > 0;
+    }
+
+    private Query createPropertyQuery(List<Query> rangeQueries) {
+        BooleanQuery.Builder ranges = new BooleanQuery.Builder();
+        for (Query rangeQuery : rangeQueries) {
+            ranges.add(rangeQuery, Occur.SHOULD);
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(LuceneUtils.createTermQuery(IndexField.ANNOTATION_IRI, propertyIri), Occur.MUST);
+        builder.add(ranges.build(), Occur.MUST);
+        return builder.build();
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + RangeQuery.class.getSimpleName().hashCode();
+        result = prime * result + getLuceneQuery().hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof RangeQuery)) {
+            return false;
+        }
+        RangeQuery other = (RangeQuery) obj;
+        return this.getLuceneQuery().equals(other.getLuceneQuery());
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("Query: ").append(getLuceneQuery());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,18 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.analysis.reverse.ReverseStringFilter;
+
+/**
+ * Analyzes text like {@link ClassicWhitespaceAnalyzer} and then reverses every token,
+ * so that a suffix of the original tokens can be looked up as a prefix of the
+ * reversed ones.
+ */
+public class ReversedClassicWhitespaceAnalyzer extends ClassicWhitespaceAnalyzer {
+
+    @Override
+    protected TokenStreamComponents createComponents(final String fieldName) {
+        TokenStreamComponents components = super.createComponents(fieldName);
+        return new TokenStreamComponents(components.getTokenizer(),
+                new ReverseStringFilter(components.getTokenStream()));
+    }
+}
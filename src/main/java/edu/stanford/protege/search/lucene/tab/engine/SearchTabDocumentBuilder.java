@@ -0,0 +1,291 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.protege.editor.search.lucene.IndexField;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.AxiomSubjectProvider;
+import org.semanticweb.owlapi.vocab.XSDVocabulary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Builds the index documents of entities and axioms. The full build, the
+ * synchronization and the incremental updates all go through this builder, so a
+ * document looks the same no matter how it got into the index. Every document
+ * carries the content key of the entity or axiom it was built from and the IRIs of
+ * the entities whose rendering it holds.
+ */
+class SearchTabDocumentBuilder implements OWLAxiomVisitor {
+
+    private final Function<IRI, Set<OWLEntity>> entityFinder;
+
+    private final Function<OWLObject, String> objectRenderer;
+
+    private final IndexFieldOptions fieldOptions;
+
+    private List<Document> documents = new ArrayList<>();
+
+    private String contentKey = "";
+
+    private Set<String> referencedIris = Collections.emptySet();
+
+    /**
+     * @param entityFinder finds the entities with a given IRI in the indexed ontologies
+     * @param objectRenderer renders entities and axioms as the editor displays them
+     * @param fieldOptions the optional fields to write for selected annotation properties
+     */
+    SearchTabDocumentBuilder(Function<IRI, Set<OWLEntity>> entityFinder, Function<OWLObject, String> objectRenderer,
+            IndexFieldOptions fieldOptions) {
+        this.entityFinder = entityFinder;
+        this.objectRenderer = objectRenderer;
+        this.fieldOptions = fieldOptions;
+    }
+
+    /**
+     * Returns the document describing an entity in the signature of the given
+     * ontology. Datatypes are not indexed.
+     */
+    List<Document> buildEntityDocuments(OWLOntologyID ontologyId, OWLEntity entity) {
+        documents = new ArrayList<>(1);
+        contentKey = ContentKey.of(ontologyId, entity);
+        referencedIris = Collections.singleton(getIri(entity));
+        if (!entity.isOWLDatatype()) {
+            Document doc = new Document();
+            doc.add(new TextField(IndexField.ENTITY_IRI, getIri(entity), Store.YES));
+            doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(entity), Store.YES));
+            doc.add(new StringField(IndexField.ENTITY_TYPE, getType(entity), Store.YES));
+            addDocument(doc);
+        }
+        return documents;
+    }
+
+    /**
+     * Returns the documents of an axiom of the given ontology. Declarations have no
+     * documents of their own, the entities they declare are described by
+     * {@link #buildEntityDocuments(OWLOntologyID, OWLEntity)}.
+     */
+    List<Document> buildAxiomDocuments(OWLOntologyID ontologyId, OWLAxiom axiom) {
+        documents = new ArrayList<>();
+        contentKey = ContentKey.of(ontologyId, axiom);
+        referencedIris = SearchTabIndexer.getReferencedIris(axiom);
+        axiom.accept(this);
+        return documents;
+    }
+
+    private void addDocument(Document doc) {
+        doc.add(new StringField(SearchTabIndexField.CONTENT_KEY, contentKey, Store.YES));
+        for (String iri : referencedIris) {
+            doc.add(new StringField(SearchTabIndexField.REFERENCED_ENTITY, iri, Store.YES));
+        }
+        documents.add(doc);
+    }
+
+    @Override
+    public void visit(OWLAnnotationAssertionAxiom axiom) {
+        if (axiom.getSubject() instanceof IRI) {
+            Document doc = new Document();
+            OWLEntity entity = getOWLEntity((IRI) axiom.getSubject());
+            doc.add(new TextField(IndexField.ENTITY_IRI, getIri(entity), Store.YES));
+            doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(entity), Store.YES));
+            doc.add(new StringField(IndexField.ANNOTATION_IRI, getIri(axiom.getProperty()), Store.YES));
+            doc.add(new TextField(IndexField.ANNOTATION_DISPLAY_NAME, getDisplayName(axiom.getProperty()), Store.YES));
+            OWLAnnotationValue value = axiom.getAnnotation().getValue();
+            if (value instanceof OWLLiteral) {
+                OWLLiteral literal = (OWLLiteral) value;
+                if (literal.getDatatype().getIRI().equals(XSDVocabulary.ANY_URI.getIRI())) {
+                    doc.add(new StringField(IndexField.ANNOTATION_VALUE_IRI, literal.getLiteral(), Store.YES));
+                }
+                else {
+                    SearchTabIndexer.addAnnotationText(doc, getIri(axiom.getProperty()), strip(literal.getLiteral()),
+                            fieldOptions);
+                    SearchTabIndexer.addTypedValue(doc, literal.getDatatype().getIRI().toString(), literal.getLiteral());
+                }
+            }
+            else if (value instanceof IRI) {
+                IRI iri = (IRI) value;
+                doc.add(new StringField(IndexField.ANNOTATION_VALUE_IRI, iri.toString(), Store.YES));
+            }
+            addDocument(doc);
+        }
+    }
+
+    @Override
+    public void visit(OWLSubClassOfAxiom axiom) {
+        visitLogicalAxiom(axiom);
+        if (!(axiom.getSubClass() instanceof OWLClass)) {
+            return;
+        }
+        OWLClass cls = axiom.getSubClass().asOWLClass();
+        for (OWLClass superClass : SearchTabIndexer.getNamedSuperClasses(axiom)) {
+            Document doc = new Document();
+            doc.add(new TextField(IndexField.ENTITY_IRI, getIri(cls), Store.YES));
+            doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(cls), Store.YES));
+            doc.add(new StringField(SearchTabIndexField.SUPERCLASS_IRI, getIri(superClass), Store.YES));
+            addDocument(doc);
+        }
+        if (axiom.getSuperClass() instanceof OWLRestriction) {
+            OWLRestriction restriction = (OWLRestriction) axiom.getSuperClass();
+            visitObjectRestriction(cls, restriction);
+        }
+        else if (axiom.getSuperClass() instanceof OWLBooleanClassExpression) {
+            OWLBooleanClassExpression expr = (OWLBooleanClassExpression) axiom.getSuperClass();
+            if (expr instanceof OWLObjectIntersectionOf) {
+                for (OWLClassExpression ce : expr.asConjunctSet()) {
+                    if (ce instanceof OWLRestriction) {
+                        visitObjectRestriction(cls, (OWLRestriction) ce);
+                    }
+                }
+            }
+            else if (expr instanceof OWLObjectUnionOf) {
+                for (OWLClassExpression ce : expr.asDisjunctSet()) {
+                    if (ce instanceof OWLRestriction) {
+                        visitObjectRestriction(cls, (OWLRestriction) ce);
+                    }
+                }
+            }
+            else if (expr instanceof OWLObjectComplementOf) {
+                OWLClassExpression ce = ((OWLObjectComplementOf) expr).getObjectComplementOf();
+                if (ce instanceof OWLRestriction) {
+                    visitObjectRestriction(cls, (OWLRestriction) ce);
+                }
+            }
+        }
+    }
+
+    private void visitObjectRestriction(OWLClass subclass, OWLRestriction restriction) {
+        if (restriction.getProperty() instanceof OWLProperty) {
+            OWLProperty property = (OWLProperty) restriction.getProperty();
+            if (restriction instanceof HasFiller<?>) {
+                HasFiller<?> restrictionWithFiller = (HasFiller<?>) restriction;
+                Document doc = new Document();
+                if (restrictionWithFiller.getFiller() instanceof OWLClass) {
+                    OWLClass filler = (OWLClass) restrictionWithFiller.getFiller();
+                    doc.add(new TextField(IndexField.ENTITY_IRI, getIri(subclass), Store.YES));
+                    doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(subclass), Store.YES));
+                    doc.add(new StringField(IndexField.OBJECT_PROPERTY_IRI, getIri(property), Store.YES));
+                    doc.add(new TextField(IndexField.OBJECT_PROPERTY_DISPLAY_NAME, getDisplayName(property), Store.YES));
+                    doc.add(new StringField(IndexField.FILLER_IRI, getIri(filler), Store.YES));
+                    doc.add(new TextField(IndexField.FILLER_DISPLAY_NAME, getDisplayName(filler), Store.YES));
+                }
+                else {
+                    doc.add(new TextField(IndexField.ENTITY_IRI, getIri(subclass), Store.YES));
+                    doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(subclass), Store.YES));
+                    doc.add(new StringField(IndexField.OBJECT_PROPERTY_IRI, getIri(property), Store.YES));
+                    doc.add(new TextField(IndexField.OBJECT_PROPERTY_DISPLAY_NAME, getDisplayName(property), Store.YES));
+                    doc.add(new StringField(IndexField.FILLER_IRI, "", Store.NO));
+                    doc.add(new TextField(IndexField.FILLER_DISPLAY_NAME, "", Store.NO));
+                }
+                addDocument(doc);
+            }
+        }
+    }
+
+    @Override
+    public void visit(OWLEquivalentClassesAxiom axiom) {
+        visitLogicalAxiom(axiom);
+        Set<OWLSubClassOfAxiom> subClassAxioms = axiom.asOWLSubClassOfAxioms();
+        for (OWLSubClassOfAxiom sc : subClassAxioms) {
+            sc.accept(this);
+        }
+    }
+
+    //@formatter:off
+    @Override public void visit(OWLNegativeObjectPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLAsymmetricObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLReflexiveObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDisjointClassesAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDataPropertyDomainAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLObjectPropertyDomainAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLEquivalentObjectPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLNegativeDataPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDifferentIndividualsAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDisjointDataPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDisjointObjectPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLObjectPropertyRangeAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLObjectPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLFunctionalObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLSubObjectPropertyOfAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDisjointUnionAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLSymmetricObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDataPropertyRangeAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLFunctionalDataPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLEquivalentDataPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLClassAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLDataPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLTransitiveObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLIrreflexiveObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLSubDataPropertyOfAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLInverseFunctionalObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLSameIndividualAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLSubPropertyChainOfAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLInverseObjectPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
+    @Override public void visit(OWLHasKeyAxiom axiom) { visitLogicalAxiom(axiom); }
+
+    //@formatter:on
+    private void visitLogicalAxiom(OWLAxiom axiom) {
+        Document doc = new Document();
+        OWLObject subject = new AxiomSubjectProvider().getSubject(axiom);
+        if (subject instanceof OWLEntity) {
+            OWLEntity entity = (OWLEntity) subject;
+            doc.add(new TextField(IndexField.ENTITY_IRI, getIri(entity), Store.YES));
+            doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(entity), Store.YES));
+            doc.add(new TextField(IndexField.AXIOM_DISPLAY_NAME, getDisplayName(axiom), Store.YES));
+            doc.add(new StringField(IndexField.AXIOM_TYPE, getType(axiom), Store.YES));
+            addDocument(doc);
+        }
+    }
+
+    //@formatter:off
+    @Override public void visit(OWLDeclarationAxiom axiom) { doesNothing(); }
+    @Override public void visit(OWLSubAnnotationPropertyOfAxiom axiom) { doesNothing(); }
+    @Override public void visit(OWLAnnotationPropertyDomainAxiom axiom) { doesNothing(); }
+    @Override public void visit(OWLAnnotationPropertyRangeAxiom axiom) { doesNothing(); }
+    @Override public void visit(SWRLRule rule) { doesNothing(); }
+    @Override public void visit(OWLDatatypeDefinitionAxiom axiom) { doesNothing(); }
+
+    //@formatter:on
+    private void doesNothing() {
+        // NO-OP
+    }
+
+    /*
+     * Utility methods
+     */
+
+    private OWLEntity getOWLEntity(IRI identifier) {
+        return entityFinder.apply(identifier).stream().findFirst().get();
+    }
+
+    private static String getIri(OWLEntity entity) {
+        return entity.getIRI().toString();
+    }
+
+    private String getDisplayName(OWLObject object) {
+        return objectRenderer.apply(object);
+    }
+
+    private static String getType(OWLObject object) {
+        if (object instanceof OWLEntity) {
+            return ((OWLEntity) object).getEntityType().getName();
+        }
+        else if (object instanceof OWLAxiom) {
+            return ((OWLAxiom) object).getAxiomType().getName();
+        }
+        return "(Unknown type)";
+    }
+
+    private static String strip(String s) {
+        return s.replaceAll("\\^\\^.*$", "") // remove datatype ending
+                .replaceAll("^\"|\"$", "") // remove enclosed quotes
+                .replaceAll("<[^>]+>", " ") // trim XML tags
+                .replaceAll("\\s+", " ") // trim excessive white spaces
+                .trim();
+    }
+}
@@ -0,0 +1,253 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.protege.editor.search.lucene.IndexField;
+import org.semanticweb.owlapi.model.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the Lucene writer and searchers of a single index directory. Unlike the
+ * plugin's <code>IndexDelegator</code>, an instance can be opened on a shadow
+ * directory, filled and warmed up while another instance keeps serving queries.
+ * <p>
+ * Searchers are near-real-time: they are opened from the writer and reopened by a
+ * background refresh loop within the target staleness after a commit, reusing the
+ * segments that did not change. Callers that run a query hold an {@link IndexSnapshot}
+ * until they are done, so a reopen never closes a reader under a running query and
+ * never waits for one. Likewise, disposing the delegator is deferred until the last
+ * open snapshot is closed.
+ */
+public class SearchTabIndexDelegator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchTabIndexDelegator.class);
+
+    private final Directory indexDirectory;
+    private final IndexWriter indexWriter;
+    private final SearcherManager searcherManager;
+
+    private final ScheduledExecutorService refreshService;
+
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+
+    private int openSnapshots = 0;
+
+    private boolean disposeRequested = false;
+
+    /**
+     * The default maximum time in milliseconds before committed changes become
+     * visible to newly acquired searchers.
+     */
+    public static final long DEFAULT_TARGET_STALENESS = 500;
+
+    // Not allowing external instantiation
+    private SearchTabIndexDelegator(Directory indexDirectory, IndexWriter indexWriter, SearcherManager searcherManager,
+            long targetStaleness) {
+        this.indexDirectory = indexDirectory;
+        this.indexWriter = indexWriter;
+        this.searcherManager = searcherManager;
+        this.refreshService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-tab-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshService.scheduleWithFixedDelay(this::refreshIfPending, targetStaleness, targetStaleness,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public static SearchTabIndexDelegator getInstance(Directory indexDirectory, IndexWriterConfig writerConfig) throws IOException {
+        return getInstance(indexDirectory, writerConfig, DEFAULT_TARGET_STALENESS);
+    }
+
+    public static SearchTabIndexDelegator getInstance(Directory indexDirectory, IndexWriterConfig writerConfig,
+            long targetStaleness) throws IOException {
+        IndexWriter indexWriter = new IndexWriter(indexDirectory, writerConfig);
+        SearcherManager searcherManager = new SearcherManager(indexWriter, new WarmingSearcherFactory());
+        return new SearchTabIndexDelegator(indexDirectory, indexWriter, searcherManager, targetStaleness);
+    }
+
+    public Directory getIndexDirectory() {
+        return indexDirectory;
+    }
+
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+
+    /**
+     * Checks if the directory holds a committed index.
+     */
+    public boolean indexExists() {
+        try {
+            return DirectoryReader.indexExists(indexDirectory);
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Pins the latest refreshed reader for as long as the returned snapshot is open.
+     * The snapshot stays usable across commits and refreshes, and even after
+     * {@link #dispose()} has been requested, hence callers must close it, preferably
+     * with try-with-resources, to let the reader go.
+     */
+    public synchronized IndexSnapshot openSnapshot() throws IOException {
+        if (disposeRequested) {
+            throw new AlreadyClosedException("Index delegator is disposed");
+        }
+        IndexSnapshot snapshot = new IndexSnapshot(this, searcherManager.acquire());
+        openSnapshots++;
+        return snapshot;
+    }
+
+    synchronized void releaseSnapshot(IndexSearcher searcher) throws IOException {
+        searcherManager.release(searcher);
+        openSnapshots--;
+        if (disposeRequested && openSnapshots == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Commits all pending changes. The changes become visible to searchers acquired
+     * after the next run of the refresh loop, i.e., within the target staleness.
+     */
+    public void commit() throws IOException {
+        indexWriter.commit();
+        refreshPending.set(true);
+    }
+
+    /**
+     * Makes the pending changes visible to searchers within the target staleness
+     * without committing them. The near-real-time reader sees changes that are still
+     * only in the writer's buffers, so durability can be deferred to a later
+     * {@link #commit()}.
+     */
+    public void publish() {
+        refreshPending.set(true);
+    }
+
+    /**
+     * Checks if the writer holds changes that are not yet committed.
+     */
+    public boolean hasUncommittedChanges() {
+        return indexWriter.hasUncommittedChanges();
+    }
+
+    /**
+     * Reopens the searcher right away, waiting for a refresh that is already running.
+     * The new reader is warmed up before it becomes visible to {@link #openSnapshot()}.
+     */
+    public void refresh() throws IOException {
+        refreshPending.set(false);
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * Persists the pending changes together with the given commit data, without
+     * reopening the searcher. Used by long-running builds to checkpoint their progress
+     * without exposing a partially built index to queries.
+     */
+    public void checkpoint(Map<String, String> commitData) throws IOException {
+        setCommitData(commitData);
+        indexWriter.commit();
+    }
+
+    /**
+     * Commits all pending changes with the given commit data.
+     */
+    public void commit(Map<String, String> commitData) throws IOException {
+        setCommitData(commitData);
+        commit();
+    }
+
+    /*
+     * The writer reads the live commit data when it commits, hence it gets a copy that
+     * the caller cannot change in the meantime.
+     */
+    private void setCommitData(Map<String, String> commitData) {
+        indexWriter.setLiveCommitData(new HashMap<>(commitData).entrySet());
+    }
+
+    /**
+     * Returns the user data of the latest commit, or an empty map if nothing was
+     * committed yet.
+     */
+    public Map<String, String> getCommitData() throws IOException {
+        if (!indexExists()) {
+            return Collections.emptyMap();
+        }
+        return SegmentInfos.readLatestCommit(indexDirectory).getUserData();
+    }
+
+    /**
+     * Closes the writer, the searchers and the directory. If snapshots are still
+     * open, closing happens when the last of them is closed.
+     */
+    public synchronized void dispose() throws IOException {
+        if (disposeRequested) {
+            return;
+        }
+        disposeRequested = true;
+        refreshService.shutdownNow();
+        if (openSnapshots == 0) {
+            close();
+        }
+    }
+
+    private void close() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+        indexDirectory.close();
+    }
+
+    private void refreshIfPending() {
+        if (refreshPending.getAndSet(false)) {
+            try {
+                if (!searcherManager.maybeRefresh()) {
+                    refreshPending.set(true); // another thread is refreshing, try again next round
+                }
+            }
+            catch (IOException | AlreadyClosedException e) {
+                logger.warn("Failed to refresh index searcher", e);
+            }
+        }
+    }
+
+    /*
+     * Touches the postings of the most commonly queried fields so that the
+     * first user query does not pay for loading the terms index.
+     */
+    private static class WarmingSearcherFactory extends SearcherFactory {
+
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher.search(new MatchAllDocsQuery(), 1);
+            searcher.search(new TermQuery(new Term(IndexField.ENTITY_TYPE, EntityType.CLASS.getName())), 1);
+            return searcher;
+        }
+    }
+}
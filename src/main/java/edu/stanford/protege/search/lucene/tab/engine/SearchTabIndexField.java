@@ -0,0 +1,97 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.protege.editor.search.lucene.IndexField;
+
+/**
+ * Index fields used by the search tab in addition to the common fields defined
+ * in {@link IndexField}.
+ */
+public final class SearchTabIndexField {
+
+    /**
+     * Identifies the ontology content (an axiom or an entity of an ontology) that a
+     * document was created from. All the documents created from the same content
+     * share the same key, see {@link ContentKey}.
+     */
+    public static final String CONTENT_KEY = "content_key";
+
+    /**
+     * Lists the IRIs of the entities whose rendering is part of a document. Used to
+     * find the documents to refresh when the rendering of an entity changes.
+     */
+    public static final String REFERENCED_ENTITY = "referenced_entity";
+
+    /**
+     * Holds the tokens of {@link IndexField#ANNOTATION_TEXT} reversed, so that a suffix
+     * query on the annotation text can run as a prefix query on this field. The field
+     * is not stored, it is derived from the annotation text.
+     */
+    public static final String ANNOTATION_TEXT_REVERSED = "annotation_text_reversed";
+
+    /**
+     * Holds the n-grams of {@link IndexField#ANNOTATION_TEXT}, so that a substring of a
+     * word can be found by a term lookup. Only the annotation text of the properties
+     * selected in {@link IndexFieldOptions#getNGramProperties()} gets this field.
+     * The field is not stored, it is derived from the annotation text.
+     */
+    public static final String ANNOTATION_TEXT_NGRAM = "annotation_text_ngram";
+
+    /**
+     * Holds the whole annotation text as a single term, lower-cased and with runs of
+     * white space collapsed (see {@link SearchTabIndexer#normalizeKeyword(String)}), so
+     * that an exact match is a single term lookup. The field is not stored, it is
+     * derived from the annotation text.
+     */
+    public static final String ANNOTATION_TEXT_KEYWORD = "annotation_text_keyword";
+
+    /**
+     * Holds the completions of short annotation values, scoped by property (see {@link
+     * ValueSuggester}). The field is not stored, it is derived from the annotation text.
+     */
+    public static final String ANNOTATION_SUGGEST = "annotation_suggest";
+
+    /**
+     * Holds the IRI of a named superclass asserted for the class in {@link
+     * IndexField#ENTITY_IRI}. Each document is one edge of the asserted class hierarchy,
+     * keyed by the subclass axiom it comes from.
+     */
+    public static final String SUPERCLASS_IRI = "superclass_iri";
+
+    /**
+     * Holds the datatype IRI of an annotation value that is an XSD number or date. The
+     * value itself is also indexed as a point in {@link #ANNOTATION_NUMBER} or {@link
+     * #ANNOTATION_DATE_TIME}, which are derived from this field and the annotation text.
+     */
+    public static final String ANNOTATION_DATATYPE = "annotation_datatype";
+
+    /**
+     * Holds the value of a numeric annotation as a double point for range queries.
+     */
+    public static final String ANNOTATION_NUMBER = "annotation_number";
+
+    /**
+     * Holds the value of a date annotation as a long point (milliseconds since the
+     * epoch) for range queries.
+     */
+    public static final String ANNOTATION_DATE_TIME = "annotation_date_time";
+
+    /*
+     * Prefix of the fields holding the annotation text of a single annotation property
+     */
+    private static final String PROPERTY_TEXT_PREFIX = "annotation_text@";
+
+    /**
+     * Returns the field that holds the annotation text of the given annotation property
+     * only, analyzed like {@link IndexField#ANNOTATION_TEXT}. A query on it does not need
+     * to be intersected with the postings of {@link IndexField#ANNOTATION_IRI}. Only the
+     * properties selected in {@link IndexFieldOptions#getPropertyFieldProperties()} get
+     * such a field. The field is not stored, it is derived from the annotation text.
+     */
+    public static String getPropertyTextField(String propertyIri) {
+        return PROPERTY_TEXT_PREFIX + propertyIri;
+    }
+
+    private SearchTabIndexField() {
+        // NO-OP
+    }
+}
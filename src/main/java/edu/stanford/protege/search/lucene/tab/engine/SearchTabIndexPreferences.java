@@ -0,0 +1,114 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.protege.editor.core.prefs.Preferences;
+import org.protege.editor.core.prefs.PreferencesManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Preferences controlling how the search tab maintains its index.
+ */
+public class SearchTabIndexPreferences {
+    private static final String PREFERENCES_KEY = "LuceneTabPreferences";
+    private static final String COMMIT_CHANGE_COUNT = "indexCommitChangeCount";
+    private static final String COMMIT_INTERVAL = "indexCommitInterval";
+    private static final String COMMIT_ON_SAVE = "indexCommitOnSave";
+    private static final String PRELOAD_BUDGET = "indexPreloadBudget";
+    private static final String DISK_BUDGET = "indexDiskBudget";
+    private static final String NGRAM_PROPERTIES = "indexNGramProperties";
+    private static final String PROPERTY_FIELD_PROPERTIES = "indexPropertyFieldProperties";
+
+    private static final int defaultCommitChangeCount = 1000;
+    private static final int defaultCommitInterval = 60; // in seconds
+    private static final boolean defaultCommitOnSave = true;
+    private static final int defaultPreloadBudget = 512; // in MB
+    private static final int defaultDiskBudget = 4096; // in MB
+
+    private static Preferences getPreferences() {
+        return PreferencesManager.getInstance().getApplicationPreferences(PREFERENCES_KEY);
+    }
+
+    /**
+     * Returns the number of applied changes after which the index is committed to disk.
+     */
+    public static int getCommitChangeCount() {
+        return getPreferences().getInt(COMMIT_CHANGE_COUNT, defaultCommitChangeCount);
+    }
+
+    /**
+     * Returns the maximum time in seconds that applied changes stay uncommitted.
+     */
+    public static int getCommitInterval() {
+        return getPreferences().getInt(COMMIT_INTERVAL, defaultCommitInterval);
+    }
+
+    /**
+     * Checks if the index is committed whenever an ontology is saved.
+     */
+    public static boolean isCommitOnSave() {
+        return getPreferences().getBoolean(COMMIT_ON_SAVE, defaultCommitOnSave);
+    }
+
+    /**
+     * Returns the maximum size in MB of an on-disk index that gets preloaded into
+     * memory when it is opened.
+     */
+    public static int getPreloadBudget() {
+        return getPreferences().getInt(PRELOAD_BUDGET, defaultPreloadBudget);
+    }
+
+    /**
+     * Returns the maximum size in MB of all the index directories on disk, or 0 if
+     * their size is not limited.
+     */
+    public static int getDiskBudget() {
+        return getPreferences().getInt(DISK_BUDGET, defaultDiskBudget);
+    }
+
+    /**
+     * Returns the IRIs of the annotation properties whose values are indexed with
+     * n-grams, which makes substring searches fast at the cost of a larger index.
+     */
+    public static Set<String> getNGramProperties() {
+        return new HashSet<>(getPreferences().getStringList(NGRAM_PROPERTIES, Collections.emptyList()));
+    }
+
+    /**
+     * Returns the IRIs of the annotation properties whose values are indexed in a field
+     * of their own, which makes value queries on them touch only their own postings.
+     */
+    public static Set<String> getPropertyFieldProperties() {
+        return new HashSet<>(getPreferences().getStringList(PROPERTY_FIELD_PROPERTIES, Collections.emptyList()));
+    }
+
+    public static void setCommitChangeCount(int changeCount) {
+        getPreferences().putInt(COMMIT_CHANGE_COUNT, Math.max(1, changeCount));
+    }
+
+    public static void setCommitInterval(int seconds) {
+        getPreferences().putInt(COMMIT_INTERVAL, Math.max(1, seconds));
+    }
+
+    public static void setCommitOnSave(boolean commitOnSave) {
+        getPreferences().putBoolean(COMMIT_ON_SAVE, commitOnSave);
+    }
+
+    public static void setPreloadBudget(int megabytes) {
+        getPreferences().putInt(PRELOAD_BUDGET, Math.max(0, megabytes));
+    }
+
+    public static void setDiskBudget(int megabytes) {
+        getPreferences().putInt(DISK_BUDGET, Math.max(0, megabytes));
+    }
+
+    public static void setNGramProperties(Set<String> propertyIris) {
+        getPreferences().putStringList(NGRAM_PROPERTIES, new ArrayList<>(propertyIris));
+    }
+
+    public static void setPropertyFieldProperties(Set<String> propertyIris) {
+        getPreferences().putStringList(PROPERTY_FIELD_PROPERTIES, new ArrayList<>(propertyIris));
+    }
+}
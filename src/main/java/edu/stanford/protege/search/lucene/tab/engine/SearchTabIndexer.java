@@ -1,21 +1,55 @@
 package edu.stanford.protege.search.lucene.tab.engine;
 
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SlowCodecReaderWrapper;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.protege.editor.owl.OWLEditorKit;
-import org.protege.editor.owl.model.OWLModelManager;
-import org.protege.editor.owl.model.find.OWLEntityFinder;
 import org.protege.editor.search.lucene.AbstractLuceneIndexer;
 import org.protege.editor.search.lucene.IndexField;
 import org.protege.editor.search.lucene.IndexItemsCollector;
+import org.protege.editor.search.lucene.SearchContext;
 import org.semanticweb.owlapi.model.*;
-import org.semanticweb.owlapi.util.AxiomSubjectProvider;
-import org.semanticweb.owlapi.vocab.XSDVocabulary;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 /**
  * Author: Josef Hardi <josef.hardi@stanford.edu><br>
@@ -25,261 +59,869 @@ import java.util.Set;
  */
 public class SearchTabIndexer extends AbstractLuceneIndexer {
 
-    private final OWLEntityFinder entityFinder;
-    private final OWLModelManager objectRenderer;
+    /*
+     * Number of indexed items (entities or logical axioms) between two checkpoints
+     */
+    private static final int CHECKPOINT_INTERVAL = 20000;
+
+    /*
+     * Commit data key marking an index built by the HeadlessIndexBuilder
+     */
+    private static final String PREBUILT = "build.prebuilt";
+
+    /*
+     * Longest annotation text indexed as a keyword, such that its UTF-8 encoding is
+     * guaranteed to stay within Lucene's term length limit
+     */
+    private static final int MAX_KEYWORD_LENGTH = IndexWriter.MAX_TERM_LENGTH / 3;
+
+    /*
+     * Fields holding renderings, which go stale when the entity renderer changes
+     */
+    private static final Set<String> DISPLAY_NAME_FIELDS = new HashSet<>(Arrays.asList(
+            IndexField.DISPLAY_NAME,
+            IndexField.ANNOTATION_DISPLAY_NAME,
+            IndexField.OBJECT_PROPERTY_DISPLAY_NAME,
+            IndexField.FILLER_DISPLAY_NAME,
+            IndexField.AXIOM_DISPLAY_NAME));
+
+    /*
+     * Fields indexed as TextField, all the other stored fields are StringField. Every
+     * field of a document is either stored or can be derived from stored fields, so a
+     * document can be rebuilt from what the index holds.
+     */
+    private static final Set<String> TEXT_FIELDS = new HashSet<>(Arrays.asList(
+            IndexField.ENTITY_IRI,
+            IndexField.DISPLAY_NAME,
+            IndexField.ANNOTATION_DISPLAY_NAME,
+            IndexField.ANNOTATION_TEXT,
+            IndexField.OBJECT_PROPERTY_DISPLAY_NAME,
+            IndexField.FILLER_DISPLAY_NAME,
+            IndexField.AXIOM_DISPLAY_NAME));
+
+    private final Function<IRI, Set<OWLEntity>> entityFinder;
+    private final Function<OWLObject, String> objectRenderer;
+
+    private volatile IndexFieldOptions fieldOptions = IndexFieldOptions.NONE;
 
     public SearchTabIndexer(OWLEditorKit editorKit) {
-        super(new ClassicWhitespaceAnalyzer());
-        entityFinder = editorKit.getOWLModelManager().getOWLEntityFinder();
-        objectRenderer = editorKit.getOWLModelManager();
+        this(editorKit.getOWLModelManager().getOWLEntityFinder()::getEntities,
+                editorKit.getOWLModelManager()::getRendering);
     }
 
-    @Override
-    public IndexItemsCollector getIndexItemsCollector() {
+    /**
+     * Creates an indexer that does not depend on a running editor, e.g., to build an
+     * index offline.
+     *
+     * @param entityFinder finds the entities with a given IRI in the indexed ontologies
+     * @param objectRenderer renders entities and axioms as the editor displays them
+     */
+    public SearchTabIndexer(Function<IRI, Set<OWLEntity>> entityFinder, Function<OWLObject, String> objectRenderer) {
+        super(newAnalyzer());
+        this.entityFinder = entityFinder;
+        this.objectRenderer = objectRenderer;
+    }
+
+    /*
+     * Analyzes all the fields with the ClassicWhitespaceAnalyzer, except for the
+     * fields derived from the annotation text whose tokens are reversed or broken into
+     * n-grams in addition.
+     */
+    private static Analyzer newAnalyzer() {
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        fieldAnalyzers.put(SearchTabIndexField.ANNOTATION_TEXT_REVERSED, new ReversedClassicWhitespaceAnalyzer());
+        fieldAnalyzers.put(SearchTabIndexField.ANNOTATION_TEXT_NGRAM, new NGramClassicWhitespaceAnalyzer());
+        return new PerFieldAnalyzerWrapper(new ClassicWhitespaceAnalyzer(), fieldAnalyzers);
+    }
+
+    /**
+     * Sets the optional fields to write for selected annotation properties. Takes effect
+     * for documents written from now on, hence the index needs to be rebuilt afterwards.
+     */
+    public void setFieldOptions(IndexFieldOptions options) {
+        fieldOptions = options;
+    }
+
+    public IndexFieldOptions getFieldOptions() {
+        return fieldOptions;
+    }
+
+    /**
+     * Checks if the index with the given commit data was built with the field options
+     * currently set on this indexer.
+     */
+    public boolean matchesFieldOptions(Map<String, String> commitData) {
+        return IndexFieldOptions.fromCommitData(commitData).equals(fieldOptions);
+    }
+
+    /**
+     * Builds the index for all the ontologies in the search context. Documents are
+     * written entity by entity and axiom by axiom, so the collector never holds more
+     * than a handful of documents at a time.
+     * <p>
+     * Ontologies, entities and axioms are visited in a fixed order and the progress is
+     * committed periodically as an {@link IndexBuildCheckpoint}. If the index holds the
+     * checkpoint of an interrupted build over the same ontologies, the build continues
+     * from there, otherwise it starts from an empty index.
+     */
+    public void doIndex(SearchTabIndexDelegator delegator, SearchContext context, IndexingProgressListener listener)
+            throws IOException {
+        doIndex(delegator, context.getOntologies(), listener);
+    }
+
+    /**
+     * Builds the index for the given ontologies, see
+     * {@link #doIndex(SearchTabIndexDelegator, SearchContext, IndexingProgressListener)}.
+     */
+    public void doIndex(SearchTabIndexDelegator delegator, Set<OWLOntology> ontologySet,
+            IndexingProgressListener listener) throws IOException {
+        doIndex(delegator, ontologySet, Collections.emptyMap(), listener);
+    }
 
-        return new IndexItemsCollector() {
+    /**
+     * Builds the index for the given ontologies, taking the documents of some of them
+     * from indexes that were built before, e.g., from a {@link SharedIndexStore}. Their
+     * segments are added to the index without analyzing the documents again. They are
+     * read through the given readers, which unlike adding their directories takes no
+     * lock on them, so several builds can add the same prebuilt index at once.
+     */
+    public void doIndex(SearchTabIndexDelegator delegator, Set<OWLOntology> ontologySet,
+            Map<OWLOntology, ? extends IndexReader> prebuiltIndexes, IndexingProgressListener listener)
+            throws IOException {
+        IndexWriter writer = delegator.getIndexWriter();
+        SearchTabItemsCollector collector = new SearchTabItemsCollector();
+        String guard = OntologyFingerprint.of(ontologySet).getValue();
+        Set<OWLOntology> ontologiesToIndex = new HashSet<>(ontologySet);
+        ontologiesToIndex.removeAll(prebuiltIndexes.keySet());
+        List<OWLOntology> ontologies = getBuildOrder(ontologiesToIndex);
 
-            private Set<Document> documents = new HashSet<>();
+        int startOntology = 0;
+        long startPosition = 0;
+        IndexBuildCheckpoint checkpoint = IndexBuildCheckpoint.fromCommitData(delegator.getCommitData());
+        if (checkpoint != null && !checkpoint.isComplete() && checkpoint.getGuard().equals(guard)
+                && matchesFieldOptions(delegator.getCommitData())) {
+            startOntology = checkpoint.getOntologyIndex();
+            startPosition = checkpoint.getPosition();
+        }
+        else {
+            writer.deleteAll();
+        }
 
-            @Override
-            public Set<Document> getIndexDocuments() {
-                return documents;
+        long total = 0;
+        long visited = 0;
+        for (int i = 0; i < ontologies.size(); i++) {
+            OWLOntology ontology = ontologies.get(i);
+            long size = ontology.getSignature().size() + ontology.getLogicalAxiomCount();
+            total += size;
+            if (i < startOntology) {
+                visited += size;
             }
+        }
+        visited += startPosition;
+        long lastProgress = fireProgress(listener, visited, total, -1);
 
-            @Override
-            public void visit(OWLOntology ontology) {
-                for (OWLEntity entity : ontology.getSignature()) {
-                    entity.accept(this);
-                    for (OWLAnnotationAssertionAxiom axiom : ontology.getAnnotationAssertionAxioms(entity.getIRI())) {
-                        axiom.accept(this);
-                    }
+        for (int i = startOntology; i < ontologies.size(); i++) {
+            OWLOntology ontology = ontologies.get(i);
+            long skip = (i == startOntology) ? startPosition : 0;
+            long position = 0;
+            for (OWLEntity entity : sorted(ontology.getSignature())) {
+                if (position++ < skip) {
+                    continue;
                 }
-                for (OWLAxiom axiom : ontology.getLogicalAxioms()) {
-                    axiom.accept(this);
+                collector.collectEntity(ontology, entity);
+                for (OWLAnnotationAssertionAxiom axiom : ontology.getAnnotationAssertionAxioms(entity.getIRI())) {
+                    collector.collectAxiom(ontology, axiom);
                 }
+                flush(writer, collector);
+                lastProgress = fireProgress(listener, ++visited, total, lastProgress);
+                checkpoint(delegator, guard, i, position);
             }
-
-            @Override
-            public void visit(OWLClass cls) {
-                Document doc = new Document();
-                doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(cls), Store.YES));
-                doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(cls), Store.YES));
-                doc.add(new StringField(IndexField.ENTITY_TYPE, getType(cls), Store.YES));
-                documents.add(doc);
+            for (OWLAxiom axiom : sorted(ontology.getLogicalAxioms())) {
+                if (position++ < skip) {
+                    continue;
+                }
+                collector.collectAxiom(ontology, axiom);
+                flush(writer, collector);
+                lastProgress = fireProgress(listener, ++visited, total, lastProgress);
+                checkpoint(delegator, guard, i, position);
             }
-
-            @Override
-            public void visit(OWLObjectProperty property) {
-                Document doc = new Document();
-                doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(property), Store.YES));
-                doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(property), Store.YES));
-                doc.add(new StringField(IndexField.ENTITY_TYPE, getType(property), Store.YES));
-                documents.add(doc);
+        }
+        if (!prebuiltIndexes.isEmpty()) {
+            List<CodecReader> segments = new ArrayList<>();
+            for (IndexReader reader : prebuiltIndexes.values()) {
+                for (LeafReaderContext context : reader.leaves()) {
+                    segments.add(SlowCodecReaderWrapper.wrap(context.reader()));
+                }
             }
+            writer.addIndexes(segments.toArray(new CodecReader[0]));
+        }
+        delegator.commit(fieldOptions.withCommitData(
+                OntologyFingerprint.withFingerprint(IndexBuildCheckpoint.complete(guard).toCommitData(), guard)));
+        delegator.refresh();
+    }
 
-            public void visit(OWLDataProperty property) {
-                Document doc = new Document();
-                doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(property), Store.YES));
-                doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(property), Store.YES));
-                doc.add(new StringField(IndexField.ENTITY_TYPE, getType(property), Store.YES));
-                documents.add(doc);
-            }
+    /**
+     * Brings a persisted index in line with the ontologies by comparing the content keys
+     * in the index with the content keys of the ontologies. Only the content that was
+     * added to or removed from the ontologies since the index was last committed gets
+     * indexed or deleted, and the documents mentioning entities whose annotations changed
+     * get their renderings refreshed. The changes are published but not committed.
+     *
+     * @return the number of indexed and deleted content items
+     */
+    public int doSynchronize(SearchTabIndexDelegator delegator, SearchContext context) throws IOException {
+        delegator.refresh();
+        try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+            return synchronize(delegator, snapshot.getSearcher(), context);
+        }
+    }
 
-            public void visit(OWLNamedIndividual individual) {
-                Document doc = new Document();
-                doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(individual), Store.YES));
-                doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(individual), Store.YES));
-                doc.add(new StringField(IndexField.ENTITY_TYPE, getType(individual), Store.YES));
-                documents.add(doc);
+    private int synchronize(SearchTabIndexDelegator delegator, IndexSearcher searcher, SearchContext context)
+            throws IOException {
+        Set<String> indexedKeys = getLiveContentKeys(searcher.getIndexReader());
+        Set<String> expectedKeys = new HashSet<>();
+        Set<OWLEntity> annotatedEntities = new HashSet<>();
+        SearchTabItemsCollector collector = new SearchTabItemsCollector();
+        int count = 0;
+        for (OWLOntology ontology : context.getOntologies()) {
+            OWLOntologyID ontologyId = ontology.getOntologyID();
+            for (OWLEntity entity : ontology.getSignature()) {
+                String entityKey = ContentKey.of(ontologyId, entity);
+                if (expectedKeys.add(entityKey) && !indexedKeys.contains(entityKey)) {
+                    collector.collectEntity(ontology, entity);
+                    count++;
+                }
+                for (OWLAnnotationAssertionAxiom axiom : ontology.getAnnotationAssertionAxioms(entity.getIRI())) {
+                    String axiomKey = ContentKey.of(ontologyId, axiom);
+                    if (expectedKeys.add(axiomKey) && !indexedKeys.contains(axiomKey)) {
+                        collector.collectAxiom(ontology, axiom);
+                        annotatedEntities.add(entity);
+                        count++;
+                    }
+                }
             }
+            for (OWLAxiom axiom : ontology.getLogicalAxioms()) {
+                String axiomKey = ContentKey.of(ontologyId, axiom);
+                if (expectedKeys.add(axiomKey) && !indexedKeys.contains(axiomKey)) {
+                    collector.collectAxiom(ontology, axiom);
+                    count++;
+                }
+            }
+        }
+        IndexWriter writer = delegator.getIndexWriter();
+        indexedKeys.removeAll(expectedKeys);
+        for (String staleKey : indexedKeys) {
+            TermQuery query = new TermQuery(new Term(SearchTabIndexField.CONTENT_KEY, staleKey));
+            for (ScoreDoc scoreDoc : searcher.search(query, Math.max(1, searcher.count(query))).scoreDocs) {
+                for (String iri : searcher.doc(scoreDoc.doc).getValues(SearchTabIndexField.REFERENCED_ENTITY)) {
+                    annotatedEntities.addAll(entityFinder.apply(IRI.create(iri)));
+                }
+            }
+            writer.deleteDocuments(query.getTerm());
+            count++;
+        }
+        Map<String, List<Document>> documentsByKey = new LinkedHashMap<>();
+        for (Document doc : collector.getIndexDocuments()) {
+            documentsByKey.computeIfAbsent(doc.get(SearchTabIndexField.CONTENT_KEY), k -> new ArrayList<>()).add(doc);
+        }
+        for (Map.Entry<String, List<Document>> entry : documentsByKey.entrySet()) {
+            writer.updateDocuments(new Term(SearchTabIndexField.CONTENT_KEY, entry.getKey()), entry.getValue());
+        }
+        if (!annotatedEntities.isEmpty()) {
+            doRefreshRenderings(delegator, context, annotatedEntities);
+        }
+        delegator.publish();
+        return count;
+    }
 
-            public void visit(OWLAnnotationProperty property) {
-                Document doc = new Document();
-                doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(property), Store.YES));
-                doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(property), Store.YES));
-                doc.add(new StringField(IndexField.ENTITY_TYPE, getType(property), Store.YES));
-                documents.add(doc);
+    /*
+     * Reads the content keys straight from the terms dictionary, skipping the keys
+     * whose documents are all deleted but not yet merged away.
+     */
+    private static Set<String> getLiveContentKeys(IndexReader reader) throws IOException {
+        Set<String> keys = new HashSet<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            LeafReader leafReader = leaf.reader();
+            Terms terms = leafReader.terms(SearchTabIndexField.CONTENT_KEY);
+            if (terms == null) {
+                continue;
+            }
+            Bits liveDocs = leafReader.getLiveDocs();
+            TermsEnum termsEnum = terms.iterator();
+            PostingsEnum postings = null;
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        keys.add(term.utf8ToString());
+                        break;
+                    }
+                }
             }
+        }
+        return keys;
+    }
+
+    /**
+     * Checks if the given commit data belongs to an index that was built outside of the
+     * editor and not yet re-rendered with the editor's renderer.
+     */
+    public static boolean isPrebuilt(Map<String, String> commitData) {
+        return Boolean.parseBoolean(commitData.get(PREBUILT));
+    }
+
+    /**
+     * Returns a copy of the given commit data with the prebuilt mark set or cleared.
+     */
+    public static Map<String, String> withPrebuiltMark(Map<String, String> commitData, boolean prebuilt) {
+        Map<String, String> copy = new HashMap<>(commitData);
+        if (prebuilt) {
+            copy.put(PREBUILT, Boolean.TRUE.toString());
+        }
+        else {
+            copy.remove(PREBUILT);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the checkpoint of the last build of the index, or null if the index was
+     * built by a version that did not record checkpoints and content keys.
+     */
+    public static IndexBuildCheckpoint getBuildCheckpoint(SearchTabIndexDelegator delegator) throws IOException {
+        return IndexBuildCheckpoint.fromCommitData(delegator.getCommitData());
+    }
+
+    private void checkpoint(SearchTabIndexDelegator delegator, String guard, int ontologyIndex, long position)
+            throws IOException {
+        if (position % CHECKPOINT_INTERVAL == 0) {
+            delegator.checkpoint(fieldOptions.withCommitData(
+                    IndexBuildCheckpoint.inProgress(guard, ontologyIndex, position).toCommitData()));
+        }
+    }
+
+    private static List<OWLOntology> getBuildOrder(Set<OWLOntology> ontologies) {
+        List<OWLOntology> order = new ArrayList<>(ontologies);
+        order.sort(Comparator.comparing(ontology -> ontology.getOntologyID().toString()));
+        return order;
+    }
+
+    private static <T extends OWLObject> List<T> sorted(Set<T> objects) {
+        List<T> list = new ArrayList<>(objects);
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * Applies the content keys and documents collected by the change-set handlers.
+     * Each removed key is deleted with a single term, and the added documents replace
+     * any document with the same content key, so applying the same change twice leaves
+     * no duplicates behind. The changes are published to searchers but not committed;
+     * when they become durable is up to the caller.
+     */
+    public void doUpdate(SearchTabIndexDelegator delegator, Collection<String> removedKeys,
+            Collection<Document> documents) throws IOException {
+        IndexWriter writer = delegator.getIndexWriter();
+        for (String key : removedKeys) {
+            writer.deleteDocuments(new Term(SearchTabIndexField.CONTENT_KEY, key));
+        }
+        Map<String, List<Document>> documentsByKey = new LinkedHashMap<>();
+        for (Document doc : documents) {
+            documentsByKey.computeIfAbsent(doc.get(SearchTabIndexField.CONTENT_KEY), k -> new ArrayList<>()).add(doc);
+        }
+        for (Map.Entry<String, List<Document>> entry : documentsByKey.entrySet()) {
+            writer.updateDocuments(new Term(SearchTabIndexField.CONTENT_KEY, entry.getKey()), entry.getValue());
+        }
+        delegator.publish();
+    }
 
-            @Override
-            public void visit(OWLAnnotationAssertionAxiom axiom) {
-                if (axiom.getSubject() instanceof IRI) {
-                    Document doc = new Document();
-                    OWLEntity entity = getOWLEntity((IRI) axiom.getSubject());
-                    doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(entity), Store.YES));
-                    doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(entity), Store.YES));
-                    doc.add(new StringField(IndexField.ANNOTATION_IRI, getEntityId(axiom.getProperty()), Store.YES));
-                    doc.add(new TextField(IndexField.ANNOTATION_DISPLAY_NAME, getDisplayName(axiom.getProperty()), Store.YES));
-                    OWLAnnotationValue value = axiom.getAnnotation().getValue();
-                    if (value instanceof OWLLiteral) {
-                        OWLLiteral literal = (OWLLiteral) value;
-                        if (literal.getDatatype().getIRI().equals(XSDVocabulary.ANY_URI.getIRI())) {
-                            doc.add(new StringField(IndexField.ANNOTATION_VALUE_IRI, literal.getLiteral(), Store.YES));
-                        }
-                        else {
-                            doc.add(new TextField(IndexField.ANNOTATION_TEXT, strip(literal.getLiteral()), Store.YES));
-                        }
+    /**
+     * Brings the content recorded in a change journal in line with the ontologies, after
+     * the changes it describes were lost from the index by a crash. The journaled keys
+     * are deleted, and every document mentioning a journaled entity is generated again
+     * from the current ontologies, which covers the content of both the added and the
+     * removed axioms whether or not the ontologies were saved before the crash.
+     */
+    public void doReplay(SearchTabIndexDelegator delegator, SearchContext context, Collection<String> contentKeys,
+            Collection<String> entityIris) throws IOException {
+        IndexWriter writer = delegator.getIndexWriter();
+        for (String key : contentKeys) {
+            writer.deleteDocuments(new Term(SearchTabIndexField.CONTENT_KEY, key));
+        }
+        SearchTabItemsCollector collector = new SearchTabItemsCollector();
+        for (String iri : entityIris) {
+            for (OWLEntity entity : entityFinder.apply(IRI.create(iri))) {
+                for (OWLOntology ontology : context.getOntologies()) {
+                    if (ontology.containsEntityInSignature(entity)) {
+                        collector.collectEntity(ontology, entity);
                     }
-                    else if (value instanceof IRI) {
-                        IRI iri = (IRI) value;
-                        doc.add(new StringField(IndexField.ANNOTATION_VALUE_IRI, iri.toString(), Store.YES));
+                    Set<OWLAxiom> axioms = new HashSet<>(ontology.getReferencingAxioms(entity));
+                    axioms.addAll(ontology.getAnnotationAssertionAxioms(entity.getIRI()));
+                    for (OWLAxiom axiom : axioms) {
+                        collector.collectAxiom(ontology, axiom);
                     }
-                    documents.add(doc);
                 }
             }
+        }
+        Map<String, List<Document>> documentsByKey = new LinkedHashMap<>();
+        for (Document doc : collector.getIndexDocuments()) {
+            documentsByKey.computeIfAbsent(doc.get(SearchTabIndexField.CONTENT_KEY), k -> new ArrayList<>()).add(doc);
+        }
+        for (Map.Entry<String, List<Document>> entry : documentsByKey.entrySet()) {
+            writer.updateDocuments(new Term(SearchTabIndexField.CONTENT_KEY, entry.getKey()), entry.getValue());
+        }
+        delegator.commit();
+    }
 
-            @Override
-            public void visit(OWLSubClassOfAxiom axiom) {
-                visitLogicalAxiom(axiom);
-                if (!(axiom.getSubClass() instanceof OWLClass)) {
-                    return;
-                }
-                OWLClass cls = axiom.getSubClass().asOWLClass();
-                if (axiom.getSuperClass() instanceof OWLRestriction) {
-                    OWLRestriction restriction = (OWLRestriction) axiom.getSuperClass();
-                    visitObjectRestriction(cls, restriction);
+    /**
+     * Re-indexes the documents that mention the given entities, if the rendering of
+     * the entities changed since they were indexed. The rendering stored in the entity
+     * document tells whether an entity is stale, and the referenced entity field finds
+     * the documents to refresh, so the work is proportional to the number of documents
+     * mentioning the entities rather than to the size of the index.
+     *
+     * @return the number of re-indexed documents
+     */
+    public int doRefreshRenderings(SearchTabIndexDelegator delegator, SearchContext context,
+            Collection<OWLEntity> entities) throws IOException {
+        delegator.refresh();
+        try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+            return refreshRenderings(delegator, snapshot.getSearcher(), context, entities);
+        }
+    }
+
+    private int refreshRenderings(SearchTabIndexDelegator delegator, IndexSearcher searcher, SearchContext context,
+            Collection<OWLEntity> entities) throws IOException {
+        SearchTabItemsCollector collector = new SearchTabItemsCollector();
+        Map<String, List<Document>> documentsByKey = new LinkedHashMap<>();
+        for (OWLEntity entity : entities) {
+            if (!isRenderingStale(searcher, context, entity)) {
+                continue;
+            }
+            Set<String> affectedKeys = getContentKeys(searcher,
+                    new TermQuery(new Term(SearchTabIndexField.REFERENCED_ENTITY, getEntityId(entity))));
+            for (OWLOntology ontology : context.getOntologies()) {
+                if (affectedKeys.contains(ContentKey.of(ontology.getOntologyID(), entity))) {
+                    collector.collectEntity(ontology, entity);
                 }
-                else if (axiom.getSuperClass() instanceof OWLBooleanClassExpression) {
-                    OWLBooleanClassExpression expr = (OWLBooleanClassExpression) axiom.getSuperClass();
-                    if (expr instanceof OWLObjectIntersectionOf) {
-                        for (OWLClassExpression ce : expr.asConjunctSet()) {
-                            if (ce instanceof OWLRestriction) {
-                                visitObjectRestriction(cls, (OWLRestriction) ce);
-                            }
-                        }
-                    }
-                    else if (expr instanceof OWLObjectUnionOf) {
-                        for (OWLClassExpression ce : expr.asDisjunctSet()) {
-                            if (ce instanceof OWLRestriction) {
-                                visitObjectRestriction(cls, (OWLRestriction) ce);
-                            }
-                        }
-                    }
-                    else if (expr instanceof OWLObjectComplementOf) {
-                        OWLClassExpression ce = ((OWLObjectComplementOf) expr).getObjectComplementOf();
-                        if (ce instanceof OWLRestriction) {
-                            visitObjectRestriction(cls, (OWLRestriction) ce);
-                        }
+                Set<OWLAxiom> axioms = new HashSet<>(ontology.getReferencingAxioms(entity));
+                axioms.addAll(ontology.getAnnotationAssertionAxioms(entity.getIRI()));
+                for (OWLAxiom axiom : axioms) {
+                    if (affectedKeys.contains(ContentKey.of(ontology.getOntologyID(), axiom))) {
+                        collector.collectAxiom(ontology, axiom);
                     }
                 }
             }
+            for (Document doc : collector.getIndexDocuments()) {
+                documentsByKey.computeIfAbsent(doc.get(SearchTabIndexField.CONTENT_KEY), k -> new ArrayList<>()).add(doc);
+            }
+            collector.getIndexDocuments().clear();
+        }
+        if (documentsByKey.isEmpty()) {
+            return 0;
+        }
+        IndexWriter writer = delegator.getIndexWriter();
+        int count = 0;
+        for (Map.Entry<String, List<Document>> entry : documentsByKey.entrySet()) {
+            writer.updateDocuments(new Term(SearchTabIndexField.CONTENT_KEY, entry.getKey()), entry.getValue());
+            count += entry.getValue().size();
+        }
+        delegator.publish();
+        return count;
+    }
 
-            @Override
-            public void visit(OWLEquivalentClassesAxiom axiom) {
-                visitLogicalAxiom(axiom);
-                Set<OWLSubClassOfAxiom> subClassAxioms = axiom.asOWLSubClassOfAxioms();
-                for (OWLSubClassOfAxiom sc : subClassAxioms) {
-                    sc.accept(this);
+    private boolean isRenderingStale(IndexSearcher searcher, SearchContext context, OWLEntity entity)
+            throws IOException {
+        String rendering = getDisplayName(entity);
+        for (OWLOntology ontology : context.getOntologies()) {
+            Term key = new Term(SearchTabIndexField.CONTENT_KEY, ContentKey.of(ontology.getOntologyID(), entity));
+            TopDocs hits = searcher.search(new TermQuery(key), 1);
+            if (hits.scoreDocs.length > 0) {
+                Document doc = searcher.doc(hits.scoreDocs[0].doc);
+                if (!rendering.equals(doc.get(IndexField.DISPLAY_NAME))) {
+                    return true;
                 }
             }
+        }
+        return false;
+    }
 
-            private void visitObjectRestriction(OWLClass subclass, OWLRestriction restriction) {
-                if (restriction.getProperty() instanceof OWLProperty) {
-                    OWLProperty property = (OWLProperty) restriction.getProperty();
-                    if (restriction instanceof HasFiller<?>) {
-                        HasFiller<?> restrictionWithFiller = (HasFiller<?>) restriction;
-                        Document doc = new Document();
-                        if (restrictionWithFiller.getFiller() instanceof OWLClass) {
-                            OWLClass filler = (OWLClass) restrictionWithFiller.getFiller();
-                            doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(subclass), Store.YES));
-                            doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(subclass), Store.YES));
-                            doc.add(new StringField(IndexField.OBJECT_PROPERTY_IRI, getEntityId(property), Store.YES));
-                            doc.add(new TextField(IndexField.OBJECT_PROPERTY_DISPLAY_NAME, getDisplayName(property), Store.YES));
-                            doc.add(new StringField(IndexField.FILLER_IRI, getEntityId(filler), Store.YES));
-                            doc.add(new TextField(IndexField.FILLER_DISPLAY_NAME, getDisplayName(filler), Store.YES));
-                        }
-                        else {
-                            doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(subclass), Store.YES));
-                            doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(subclass), Store.YES));
-                            doc.add(new StringField(IndexField.OBJECT_PROPERTY_IRI, getEntityId(property), Store.YES));
-                            doc.add(new TextField(IndexField.OBJECT_PROPERTY_DISPLAY_NAME, getDisplayName(property), Store.YES));
-                            doc.add(new StringField(IndexField.FILLER_IRI, "", Store.NO));
-                            doc.add(new TextField(IndexField.FILLER_DISPLAY_NAME, "", Store.NO));
-                        }
-                        documents.add(doc);
-                    }
+    private static Set<String> getContentKeys(IndexSearcher searcher, Query query) throws IOException {
+        Set<String> keys = new HashSet<>();
+        int maxDoc = Math.max(1, searcher.getIndexReader().maxDoc());
+        for (ScoreDoc scoreDoc : searcher.search(query, maxDoc).scoreDocs) {
+            keys.add(searcher.doc(scoreDoc.doc).get(SearchTabIndexField.CONTENT_KEY));
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the IRIs of the entities whose rendering appears in the documents of the
+     * given axiom. The subject of an annotation assertion is an IRI, hence it is not
+     * part of the axiom signature and has to be added separately.
+     */
+    static Set<String> getReferencedIris(OWLAxiom axiom) {
+        Set<String> iris = new HashSet<>();
+        for (OWLEntity entity : axiom.getSignature()) {
+            iris.add(entity.getIRI().toString());
+        }
+        if (axiom instanceof OWLAnnotationAssertionAxiom) {
+            OWLAnnotationSubject subject = ((OWLAnnotationAssertionAxiom) axiom).getSubject();
+            if (subject instanceof IRI) {
+                iris.add(subject.toString());
+            }
+        }
+        return iris;
+    }
+
+    /**
+     * Returns the named classes that the given axiom asserts as superclasses of its
+     * named subclass, i.e., the superclass itself or the named conjuncts of an
+     * intersection. These are the edges of the asserted class hierarchy.
+     */
+    static Set<OWLClass> getNamedSuperClasses(OWLSubClassOfAxiom axiom) {
+        if (axiom.getSubClass().isAnonymous()) {
+            return Collections.emptySet();
+        }
+        Set<OWLClass> superClasses = new HashSet<>();
+        OWLClassExpression superClass = axiom.getSuperClass();
+        if (!superClass.isAnonymous()) {
+            superClasses.add(superClass.asOWLClass());
+        }
+        else if (superClass instanceof OWLObjectIntersectionOf) {
+            for (OWLClassExpression ce : superClass.asConjunctSet()) {
+                if (!ce.isAnonymous()) {
+                    superClasses.add(ce.asOWLClass());
                 }
             }
+        }
+        superClasses.remove(axiom.getSubClass().asOWLClass());
+        return superClasses;
+    }
+
+    private static String getEntityId(OWLEntity entity) {
+        return entity.getIRI().toString();
+    }
+
+    private String getDisplayName(OWLObject object) {
+        return objectRenderer.apply(object);
+    }
+
+    /**
+     * Re-renders the display names of all the documents visible to the given searcher,
+     * e.g., after the user switched the entity renderer. The documents are rebuilt from
+     * their stored fields, one index segment per task in parallel, so the ontology does
+     * not have to be walked again. Only the documents whose display names actually
+     * changed are returned, grouped by content key.
+     */
+    public Map<String, List<Document>> doRerender(IndexSearcher searcher, SearchContext context,
+            BooleanSupplier cancelled) {
+        Map<String, String> renderings = new ConcurrentHashMap<>();
+        Map<String, List<Document>> documentsByKey = new ConcurrentHashMap<>();
+        searcher.getIndexReader().leaves().parallelStream().forEach(leaf -> {
+            try {
+                rerenderSegment(leaf.reader(), context, renderings, documentsByKey, cancelled);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return documentsByKey;
+    }
 
-            //@formatter:off
-            @Override public void visit(OWLNegativeObjectPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLAsymmetricObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLReflexiveObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDisjointClassesAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDataPropertyDomainAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLObjectPropertyDomainAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLEquivalentObjectPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLNegativeDataPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDifferentIndividualsAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDisjointDataPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDisjointObjectPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLObjectPropertyRangeAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLObjectPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLFunctionalObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLSubObjectPropertyOfAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDisjointUnionAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLSymmetricObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDataPropertyRangeAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLFunctionalDataPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLEquivalentDataPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLClassAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLDataPropertyAssertionAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLTransitiveObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLIrreflexiveObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLSubDataPropertyOfAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLInverseFunctionalObjectPropertyAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLSameIndividualAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLSubPropertyChainOfAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLInverseObjectPropertiesAxiom axiom) { visitLogicalAxiom(axiom); }
-            @Override public void visit(OWLHasKeyAxiom axiom) { visitLogicalAxiom(axiom); }
-
-            //@formatter:on
-            private void visitLogicalAxiom(OWLAxiom axiom) {
-                Document doc = new Document();
-                OWLObject subject = new AxiomSubjectProvider().getSubject(axiom);
-                if (subject instanceof OWLEntity) {
-                    OWLEntity entity = (OWLEntity) subject;
-                    doc.add(new TextField(IndexField.ENTITY_IRI, getEntityId(entity), Store.YES));
-                    doc.add(new TextField(IndexField.DISPLAY_NAME, getDisplayName(entity), Store.YES));
-                    doc.add(new TextField(IndexField.AXIOM_DISPLAY_NAME, getDisplayName(axiom), Store.YES));
-                    doc.add(new StringField(IndexField.AXIOM_TYPE, getType(axiom), Store.YES));
-                    documents.add(doc);
+    /**
+     * Replaces the documents of each content key with the re-rendered ones, unless the
+     * content was removed from the index in the meantime.
+     */
+    public void doReplace(SearchTabIndexDelegator delegator, Map<String, List<Document>> documentsByKey)
+            throws IOException {
+        delegator.refresh(); // see the removals that are applied but not yet visible
+        IndexWriter writer = delegator.getIndexWriter();
+        try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+            IndexSearcher searcher = snapshot.getSearcher();
+            for (Map.Entry<String, List<Document>> entry : documentsByKey.entrySet()) {
+                Term key = new Term(SearchTabIndexField.CONTENT_KEY, entry.getKey());
+                if (searcher.count(new TermQuery(key)) > 0) {
+                    writer.updateDocuments(key, entry.getValue());
                 }
             }
+        }
+        delegator.commit();
+    }
 
-            /*
-             * Utility methods
-             */
+    /*
+     * Documents sharing a content key are always written as one block, hence they
+     * live in the same segment and can be regrouped segment by segment.
+     */
+    private void rerenderSegment(LeafReader reader, SearchContext context, Map<String, String> renderings,
+            Map<String, List<Document>> documentsByKey, BooleanSupplier cancelled) throws IOException {
+        Bits liveDocs = reader.getLiveDocs();
+        Map<String, List<Document>> segmentDocuments = new LinkedHashMap<>();
+        Set<String> changedKeys = new HashSet<>();
+        for (int i = 0; i < reader.maxDoc(); i++) {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            if (liveDocs != null && !liveDocs.get(i)) {
+                continue;
+            }
+            Document stored = reader.document(i);
+            String key = stored.get(SearchTabIndexField.CONTENT_KEY);
+            Document doc = rerenderDocument(stored, context, renderings);
+            segmentDocuments.computeIfAbsent(key, k -> new ArrayList<>()).add(doc);
+            if (isRenderingChanged(stored, doc)) {
+                changedKeys.add(key);
+            }
+        }
+        for (String key : changedKeys) {
+            documentsByKey.put(key, segmentDocuments.get(key));
+        }
+    }
 
-            private OWLEntity getOWLEntity(IRI identifier) {
-                return entityFinder.getEntities(identifier).stream().findFirst().get();
+    private Document rerenderDocument(Document stored, SearchContext context, Map<String, String> renderings) {
+        Document doc = new Document();
+        for (IndexableField field : stored.getFields()) {
+            if (field.name().equals(IndexField.ANNOTATION_TEXT)) {
+                addAnnotationText(doc, stored.get(IndexField.ANNOTATION_IRI), field.stringValue(), fieldOptions);
+            }
+            else if (field.name().equals(SearchTabIndexField.ANNOTATION_DATATYPE)) {
+                addTypedValue(doc, field.stringValue(), stored.get(IndexField.ANNOTATION_TEXT));
+            }
+            else if (!DISPLAY_NAME_FIELDS.contains(field.name())) {
+                addStoredField(doc, field.name(), field.stringValue());
+            }
+        }
+        String entityIri = stored.get(IndexField.ENTITY_IRI);
+        if (entityIri != null) {
+            String rendering = getRendering(entityIri, stored.get(IndexField.ENTITY_TYPE), renderings);
+            addStoredField(doc, IndexField.DISPLAY_NAME, orElse(rendering, stored.get(IndexField.DISPLAY_NAME)));
+        }
+        String annotationIri = stored.get(IndexField.ANNOTATION_IRI);
+        if (annotationIri != null) {
+            String rendering = getRendering(annotationIri, EntityType.ANNOTATION_PROPERTY.getName(), renderings);
+            addStoredField(doc, IndexField.ANNOTATION_DISPLAY_NAME,
+                    orElse(rendering, stored.get(IndexField.ANNOTATION_DISPLAY_NAME)));
+        }
+        String propertyIri = stored.get(IndexField.OBJECT_PROPERTY_IRI);
+        if (propertyIri != null) {
+            String rendering = getRendering(propertyIri, null, renderings);
+            addStoredField(doc, IndexField.OBJECT_PROPERTY_DISPLAY_NAME,
+                    orElse(rendering, stored.get(IndexField.OBJECT_PROPERTY_DISPLAY_NAME)));
+            String fillerIri = stored.get(IndexField.FILLER_IRI);
+            if (fillerIri != null) {
+                String fillerRendering = getRendering(fillerIri, EntityType.CLASS.getName(), renderings);
+                addStoredField(doc, IndexField.FILLER_DISPLAY_NAME,
+                        orElse(fillerRendering, stored.get(IndexField.FILLER_DISPLAY_NAME)));
             }
+            else {
+                // The filler of the restriction is not a named class, see visitObjectRestriction()
+                doc.add(new StringField(IndexField.FILLER_IRI, "", Store.NO));
+                doc.add(new TextField(IndexField.FILLER_DISPLAY_NAME, "", Store.NO));
+            }
+        }
+        if (stored.get(IndexField.AXIOM_TYPE) != null) {
+            OWLAxiom axiom = findAxiom(entityIri, stored.get(SearchTabIndexField.CONTENT_KEY), context);
+            String rendering = (axiom != null) ? getDisplayName(axiom) : null;
+            addStoredField(doc, IndexField.AXIOM_DISPLAY_NAME,
+                    orElse(rendering, stored.get(IndexField.AXIOM_DISPLAY_NAME)));
+        }
+        return doc;
+    }
+
+    private static void addStoredField(Document doc, String name, String value) {
+        if (TEXT_FIELDS.contains(name)) {
+            doc.add(new TextField(name, value, Store.YES));
+        }
+        else {
+            doc.add(new StringField(name, value, Store.YES));
+        }
+    }
+
+    /**
+     * Adds the annotation text to the document together with the fields derived from
+     * it, see {@link SearchTabIndexField#ANNOTATION_TEXT_REVERSED}, {@link
+     * SearchTabIndexField#ANNOTATION_TEXT_KEYWORD}, {@link
+     * SearchTabIndexField#ANNOTATION_SUGGEST} and {@link
+     * SearchTabIndexField#ANNOTATION_TEXT_NGRAM}, and the fields selected by the given
+     * options for the annotation property.
+     */
+    static void addAnnotationText(Document doc, String propertyIri, String text, IndexFieldOptions options) {
+        doc.add(new TextField(IndexField.ANNOTATION_TEXT, text, Store.YES));
+        String keyword = normalizeKeyword(text);
+        if (isIndexedKeyword(keyword)) {
+            doc.add(new StringField(SearchTabIndexField.ANNOTATION_TEXT_KEYWORD, keyword, Store.NO));
+        }
+        doc.add(new TextField(SearchTabIndexField.ANNOTATION_TEXT_REVERSED, text, Store.NO));
+        for (String suggestion : ValueSuggester.getSuggestionTerms(propertyIri, text)) {
+            doc.add(new StringField(SearchTabIndexField.ANNOTATION_SUGGEST, suggestion, Store.NO));
+        }
+        if (options.hasNGrams(propertyIri)) {
+            doc.add(new TextField(SearchTabIndexField.ANNOTATION_TEXT_NGRAM, text, Store.NO));
+        }
+        if (options.hasPropertyField(propertyIri)) {
+            doc.add(new TextField(SearchTabIndexField.getPropertyTextField(propertyIri), text, Store.NO));
+        }
+    }
+
+    /**
+     * Indexes a numeric or date annotation value as a point for range queries, see
+     * {@link SearchTabIndexField#ANNOTATION_DATATYPE}. Values of other datatypes are
+     * left out.
+     */
+    static void addTypedValue(Document doc, String datatypeIri, String lexicalForm) {
+        Double number = TypedLiteralValues.getNumber(datatypeIri, lexicalForm);
+        Long dateTime = TypedLiteralValues.getDateTime(datatypeIri, lexicalForm);
+        if (number == null && dateTime == null) {
+            return;
+        }
+        doc.add(new StringField(SearchTabIndexField.ANNOTATION_DATATYPE, datatypeIri, Store.YES));
+        if (number != null) {
+            doc.add(new DoublePoint(SearchTabIndexField.ANNOTATION_NUMBER, number));
+        }
+        if (dateTime != null) {
+            doc.add(new LongPoint(SearchTabIndexField.ANNOTATION_DATE_TIME, dateTime));
+        }
+    }
 
-            private String getEntityId(OWLEntity entity) {
-                return entity.getIRI().toString();
+    /**
+     * Normalizes a text for exact matching: lower-cased, with leading and trailing white
+     * space removed and the remaining runs of white space collapsed into one space.
+     */
+    public static String normalizeKeyword(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * Checks if a normalized keyword is short enough to be indexed, see {@link
+     * SearchTabIndexField#ANNOTATION_TEXT_KEYWORD}. Longer annotation texts cannot be
+     * matched by keyword.
+     */
+    static boolean isIndexedKeyword(String keyword) {
+        return keyword.length() <= MAX_KEYWORD_LENGTH;
+    }
+
+    private static boolean isRenderingChanged(Document stored, Document doc) {
+        for (String field : DISPLAY_NAME_FIELDS) {
+            String oldValue = stored.get(field);
+            if (oldValue != null && !oldValue.equals(doc.get(field))) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            private String getType(OWLObject object) {
-                if (object instanceof OWLEntity) {
-                    return ((OWLEntity) object).getEntityType().getName();
-                }
-                else if (object instanceof OWLAxiom) {
-                    return ((OWLAxiom) object).getAxiomType().getName();
+    /*
+     * Renders an entity given its IRI, memoized per IRI since the same entities are
+     * mentioned over and over. Returns null if the entity cannot be found.
+     */
+    private String getRendering(String iri, String entityType, Map<String, String> renderings) {
+        String rendering = renderings.computeIfAbsent(iri + " " + entityType, k -> {
+            Set<OWLEntity> entities = entityFinder.apply(IRI.create(iri));
+            OWLEntity entity = entities.stream()
+                    .filter(e -> entityType == null || e.getEntityType().getName().equals(entityType))
+                    .findFirst()
+                    .orElse(entities.stream().findFirst().orElse(null));
+            return (entity != null) ? getDisplayName(entity) : "";
+        });
+        return rendering.isEmpty() ? null : rendering;
+    }
+
+    /*
+     * Finds the axiom a logical axiom document was created from, among the axioms
+     * referencing the subject of the document.
+     */
+    private OWLAxiom findAxiom(String subjectIri, String contentKey, SearchContext context) {
+        if (subjectIri == null || contentKey == null) {
+            return null;
+        }
+        for (OWLEntity subject : entityFinder.apply(IRI.create(subjectIri))) {
+            for (OWLOntology ontology : context.getOntologies()) {
+                for (OWLAxiom axiom : ontology.getReferencingAxioms(subject)) {
+                    if (contentKey.equals(ContentKey.of(ontology.getOntologyID(), axiom))) {
+                        return axiom;
+                    }
                 }
-                return "(Unknown type)";
             }
+        }
+        return null;
+    }
 
-            private String getDisplayName(OWLObject object) {
-                return objectRenderer.getRendering(object);
-            }
+    private static String orElse(String value, String defaultValue) {
+        return (value != null) ? value : defaultValue;
+    }
+
+    private static void flush(IndexWriter writer, IndexItemsCollector collector) throws IOException {
+        Set<Document> documents = collector.getIndexDocuments();
+        if (!documents.isEmpty()) {
+            writer.addDocuments(documents);
+            documents.clear();
+        }
+    }
+
+    private static long fireProgress(IndexingProgressListener listener, long visited, long total, long lastProgress) {
+        if (listener == null || total == 0) {
+            return lastProgress;
+        }
+        long progress = (visited * 100) / total;
+        if (progress != lastProgress) {
+            listener.fireIndexingProgressed(progress);
+        }
+        return progress;
+    }
 
-            private String strip(String s) {
-                return s.replaceAll("\\^\\^.*$", "") // remove datatype ending
-                        .replaceAll("^\"|\"$", "") // remove enclosed quotes
-                        .replaceAll("<[^>]+>", " ") // trim XML tags
-                        .replaceAll("\\s+", " ") // trim excessive white spaces
-                        .trim();
+    @Override
+    public IndexItemsCollector getIndexItemsCollector() {
+        return new SearchTabItemsCollector();
+    }
+
+    /*
+     * Collects the documents built for the content of the ontologies, with the field
+     * options in effect when the collector was created.
+     */
+    private class SearchTabItemsCollector extends IndexItemsCollector {
+
+        private final Set<Document> documents = new HashSet<>();
+
+        private final SearchTabDocumentBuilder documentBuilder =
+                new SearchTabDocumentBuilder(entityFinder, objectRenderer, fieldOptions);
+
+        @Override
+        public Set<Document> getIndexDocuments() {
+            return documents;
+        }
+
+        @Override
+        public void visit(OWLOntology ontology) {
+            for (OWLEntity entity : ontology.getSignature()) {
+                collectEntity(ontology, entity);
+                for (OWLAnnotationAssertionAxiom axiom : ontology.getAnnotationAssertionAxioms(entity.getIRI())) {
+                    collectAxiom(ontology, axiom);
+                }
+            }
+            for (OWLAxiom axiom : ontology.getLogicalAxioms()) {
+                collectAxiom(ontology, axiom);
             }
-        };
+        }
+
+        /**
+         * Collects the document of an entity in the signature of the given ontology.
+         */
+        public void collectEntity(OWLOntology ontology, OWLEntity entity) {
+            documents.addAll(documentBuilder.buildEntityDocuments(ontology.getOntologyID(), entity));
+        }
+
+        /**
+         * Collects the documents of an axiom of the given ontology. All of them get the
+         * content key of the axiom.
+         */
+        public void collectAxiom(OWLOntology ontology, OWLAxiom axiom) {
+            documents.addAll(documentBuilder.buildAxiomDocuments(ontology.getOntologyID(), axiom));
+        }
+    }
+
+    public interface IndexingProgressListener {
+
+        void fireIndexingProgressed(long progress);
     }
 }
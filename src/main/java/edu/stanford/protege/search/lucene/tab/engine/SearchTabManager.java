@@ -1,10 +1,15 @@
 package edu.stanford.protege.search.lucene.tab.engine;
 
 import com.google.common.base.Stopwatch;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.store.RAMDirectory;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.model.event.EventType;
 import org.protege.editor.owl.model.event.OWLModelManagerChangeEvent;
@@ -17,13 +22,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
-import java.io.File;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -38,6 +51,10 @@ public class SearchTabManager extends LuceneSearcher {
 
     private static final Logger logger = LoggerFactory.getLogger(SearchTabManager.class);
 
+    private static final long UPDATE_QUIET_PERIOD = 250; // in ms
+
+    private static final long UPDATE_MAX_DELAY = 2000; // in ms
+
     private final List<ProgressMonitor> progressMonitors = new ArrayList<>();
 
     private OWLEditorKit editorKit;
@@ -46,6 +63,12 @@ public class SearchTabManager extends LuceneSearcher {
 
     private ExecutorService service = Executors.newSingleThreadExecutor();
 
+    private ExecutorService updateService = Executors.newSingleThreadExecutor();
+
+    private ExecutorService rebuildService = Executors.newSingleThreadExecutor();
+
+    private ExecutorService suggestService = Executors.newSingleThreadExecutor();
+
     private AtomicLong lastSearchId = new AtomicLong(0);
 
     private AtomicBoolean stopSearch = new AtomicBoolean(false);
@@ -54,7 +77,36 @@ public class SearchTabManager extends LuceneSearcher {
 
     private SearchTabIndexer indexer;
 
-    private IndexDelegator indexDelegator;
+    private volatile SearchTabIndexDelegator indexDelegator;
+
+    private volatile IndexDirectoryLayout indexLayout; // null when the index is stored in memory
+
+    private volatile IndexChangeJournal changeJournal; // null when the index is stored in memory
+
+    private volatile OntologyFingerprint indexFingerprint; // of the content applied to the index
+
+    private volatile IndexDiskCache indexCache; // the index directories of all ontologies
+
+    private final Object commitLock = new Object();
+
+    private final ScheduledExecutorService commitScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private ScheduledFuture<?> scheduledCommit; // only accessed from the update thread
+
+    private int uncommittedChanges = 0; // only accessed from the update thread
+
+    private final AtomicLong indexEpoch = new AtomicLong(0);
+
+    private final AtomicBoolean rebuildInProgress = new AtomicBoolean(false);
+
+    private final AtomicLong renderingPass = new AtomicLong(0);
+
+    private final ThreadLocal<IndexSnapshot> currentSnapshot = new ThreadLocal<>();
+
+    private final List<OWLOntologyChange> changesDuringRebuild = new ArrayList<>();
+
+    private final IndexUpdateQueue updateQueue = new IndexUpdateQueue(
+            () -> updateService.submit(this::flushingIndexUpdates), UPDATE_QUIET_PERIOD, UPDATE_MAX_DELAY);
 
     private SearchContext searchContext;
 
@@ -83,10 +135,22 @@ public class SearchTabManager extends LuceneSearcher {
 
     private void handleModelManagerEvent(OWLModelManagerChangeEvent event) {
         if (isCacheChangingEvent(event)) {
-            disposeIndexDelegator();
+            final long epoch = indexEpoch.incrementAndGet();
+            updateQueue.clear();
             markIndexAsStale();
-            initIndex();
+            updateService.submit(() -> switchingIndex(epoch));
+        }
+        else if (isRendererChangingEvent(event)) {
+            rerenderIndex();
         }
+        else if (event.isType(EventType.ONTOLOGY_SAVED) && SearchTabIndexPreferences.isCommitOnSave()) {
+            updateService.submit(this::flushingIndexUpdates);
+            updateService.submit(this::committingIndex);
+        }
+    }
+
+    private boolean isRendererChangingEvent(OWLModelManagerChangeEvent event) {
+        return event.isType(EventType.ENTITY_RENDERER_CHANGED);
     }
 
     private boolean isCacheChangingEvent(OWLModelManagerChangeEvent event) {
@@ -97,40 +161,530 @@ public class SearchTabManager extends LuceneSearcher {
         searchContext = new SearchContext(editorKit);
     }
 
+    /*
+     * Runs on the update thread, hence after the build or update that may still be
+     * running on the index of the previous active ontology. Committing, closing and
+     * opening the index directories may take a while and must not block the UI.
+     */
+    private void switchingIndex(long epoch) {
+        closeIndex();
+        if (epoch == indexEpoch.get()) { // skip the indexes of quickly superseded ontologies
+            initIndex();
+        }
+    }
+
+    /*
+     * A new build writes the fields selected in the preferences, while the updates of
+     * an existing index keep writing the fields that the index was built with, which
+     * are also the fields that the queries rely on. If the two differ, the index gets
+     * rebuilt once it has been validated.
+     */
     private void initIndex() {
         if (searchContext.isIndexable()) {
+            indexer.setFieldOptions(IndexFieldOptions.fromPreferences());
             initIndexRecord();
             initIndexDelegator();
-            if (!indexDelegator.indexExists()) {
-                service.submit(this::buildingIndex);
+            if (!indexDelegator.indexExists() || isBuildIncomplete()) {
+                updateService.submit(this::buildingIndex);
             }
+            else {
+                indexer.setFieldOptions(getIndexedFieldOptions());
+                if (changeJournal != null && !changeJournal.isEmpty()) {
+                    updateService.submit(this::replayingJournal);
+                }
+                updateService.submit(this::validatingIndex);
+            }
+            updateService.submit(this::evictingIndexCache);
         }
     }
 
+    /**
+     * Rebuilds the index into a shadow directory while the current index keeps
+     * serving queries. The rebuilt index replaces the current one only after it has
+     * been committed, warmed up and brought up to date with the changes made in the
+     * meantime.
+     */
     public void rebuildIndex() {
+        if (indexDelegator == null) {
+            updateService.submit(() -> {
+                if (indexDelegator == null) {
+                    initIndex();
+                }
+            });
+            return;
+        }
+        if (!rebuildInProgress.compareAndSet(false, true)) {
+            logger.info("Index rebuild is already in progress");
+            return;
+        }
         logger.info("Rebuilding index");
-        disposeIndexDelegator();
-        removeIndexDirectory();
-        initIndex();
+        final IndexFieldOptions fieldOptions = IndexFieldOptions.fromPreferences();
+        final long epoch = indexEpoch.get();
+        final IndexDirectoryLayout layout = indexLayout;
+        rebuildService.submit(() -> rebuildingIndex(fieldOptions, layout, epoch));
     }
 
     private void updateIndex(List<? extends OWLOntologyChange> changes) {
         if (indexDelegator != null) {
-            service.submit(() -> updatingIndex(changes));
-            LuceneIndexPreferences.updateIndexChecksum(getActiveOntology());
+            updateQueue.enqueue(changes);
+            if (changes.stream().anyMatch(change -> change instanceof SetOntologyID)) {
+                updateService.submit(this::rekeyingIndex);
+            }
+        }
+    }
+
+    /*
+     * Runs on the update thread after an indexed ontology got a new ID. The content
+     * keys embed the ontology ID, hence the pending changes are applied first and the
+     * index is then synchronized with the ontologies, which replaces the documents
+     * keyed with the old ID.
+     */
+    private void rekeyingIndex() {
+        flushingIndexUpdates();
+        SearchTabIndexDelegator delegator = indexDelegator;
+        if (delegator == null) {
+            return;
         }
+        logger.info("Ontology ID changed, re-keying index");
+        OntologyFingerprint fingerprint = OntologyFingerprint.of(searchContext.getOntologies());
+        indexFingerprint = fingerprint;
+        synchronizingIndex(delegator, fingerprint);
     }
 
-    private void updatingIndex(List<? extends OWLOntologyChange> changes) {
+    /*
+     * Runs on the update thread, in parallel to searches, which keep evaluating
+     * against their own snapshot. The batch is journaled, applied and published to
+     * searchers right away, but committed to disk only by committingIndex(), i.e.,
+     * after the configured number of changes or time, or when the ontology is saved.
+     */
+    private void flushingIndexUpdates() {
+        List<OWLOntologyChange> changes = updateQueue.drain();
+        SearchTabIndexDelegator delegator = indexDelegator;
+        IndexChangeJournal journal = changeJournal;
+        if (changes.isEmpty() || delegator == null) {
+            return;
+        }
         logger.info("Updating index with " + changes.size() + " change(s)");
         try {
-            RemoveChangeSet removeChangeSet = RemoveChangeSet.create(changes, new SearchTabRemoveChangeSetHandler(editorKit));
-            indexer.doRemove(indexDelegator, removeChangeSet);
-            AddChangeSet addChangeSet = AddChangeSet.create(changes, new SearchTabAddChangeSetHandler(editorKit));
-            indexer.doAppend(indexDelegator, addChangeSet);
+            synchronized (commitLock) {
+                if (journal != null) {
+                    journal.append(getContentKeys(changes), getReferencedIris(changes));
+                }
+                updatingIndex(delegator, changes);
+                OntologyFingerprint fingerprint = indexFingerprint;
+                if (fingerprint != null) {
+                    fingerprint.apply(changes);
+                }
+            }
+            recordChangesDuringRebuild(changes);
+        }
+        catch (IOException | AlreadyClosedException e) {
+            logger.error("... update index failed", e);
+            return;
+        }
+        Set<OWLEntity> annotatedEntities = getAnnotatedEntities(changes);
+        if (!annotatedEntities.isEmpty()) {
+            updateService.submit(() -> refreshingRenderings(annotatedEntities));
+        }
+        uncommittedChanges += changes.size();
+        if (uncommittedChanges >= SearchTabIndexPreferences.getCommitChangeCount()) {
+            updateService.submit(this::committingIndex); // after the rendering refresh above
+        }
+        else if (scheduledCommit == null) {
+            scheduledCommit = commitScheduler.schedule(() -> updateService.submit(this::committingIndex),
+                    SearchTabIndexPreferences.getCommitInterval(), TimeUnit.SECONDS);
+        }
+    }
+
+    /*
+     * Runs on the update thread and makes the updates applied so far durable.
+     */
+    private void committingIndex() {
+        if (scheduledCommit != null) {
+            scheduledCommit.cancel(false);
+            scheduledCommit = null;
+        }
+        uncommittedChanges = 0;
+        commitIndex(indexDelegator, changeJournal, indexFingerprint);
+    }
+
+    /*
+     * Commits the pending updates of the given index and truncates its journal. The
+     * journal is kept if there were no updates, because then it still describes the
+     * updates lost by a previous session that are waiting to be replayed. The given
+     * fingerprint of the applied content is stored with the commit. Without one, the
+     * stored fingerprint is kept if the index content did not change and dropped
+     * otherwise.
+     */
+    private void commitIndex(SearchTabIndexDelegator delegator, IndexChangeJournal journal,
+            OntologyFingerprint fingerprint) {
+        if (delegator == null) {
+            return;
+        }
+        synchronized (commitLock) {
+            try {
+                Map<String, String> commitData = delegator.getCommitData();
+                boolean updated = delegator.hasUncommittedChanges();
+                String fingerprintValue = (fingerprint != null) ? fingerprint.getValue() : null;
+                if (fingerprintValue == null && !updated) {
+                    fingerprintValue = OntologyFingerprint.fromCommitData(commitData);
+                }
+                Map<String, String> newCommitData = OntologyFingerprint.withFingerprint(commitData, fingerprintValue);
+                if (updated || !newCommitData.equals(commitData)) {
+                    delegator.commit(newCommitData);
+                }
+                if (updated && journal != null) {
+                    journal.clear();
+                }
+            }
+            catch (IOException | AlreadyClosedException e) {
+                logger.error("... commit index failed", e);
+            }
+        }
+    }
+
+    /*
+     * Runs on the update thread before any other update, when the index was opened
+     * with a journal left over by a session that ended without committing.
+     */
+    private void replayingJournal() {
+        SearchTabIndexDelegator delegator = indexDelegator;
+        IndexChangeJournal journal = changeJournal;
+        if (delegator == null || journal == null) {
+            return;
+        }
+        logger.info("Replaying uncommitted index updates from the previous session");
+        synchronized (commitLock) {
+            try {
+                indexer.doReplay(delegator, searchContext, journal.getContentKeys(), journal.getEntityIris());
+                journal.clear();
+            }
+            catch (IOException | AlreadyClosedException e) {
+                logger.error("... replay index updates failed", e);
+            }
+        }
+    }
+
+    /*
+     * Runs on the update thread after a persisted index was opened. The fingerprint of
+     * the ontologies is computed once here, away from the UI, and from then on kept up
+     * to date from the applied changes. If the index does not carry that fingerprint,
+     * e.g., because the ontologies were edited outside of Protege or the last session
+     * ended without committing, it is synchronized with the ontologies.
+     */
+    private void validatingIndex() {
+        SearchTabIndexDelegator delegator = indexDelegator;
+        if (delegator == null) {
+            return;
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        OntologyFingerprint fingerprint = OntologyFingerprint.of(searchContext.getOntologies());
+        logger.info("... computed ontology fingerprint in {} ms", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        indexFingerprint = fingerprint;
+        try {
+            Map<String, String> commitData = delegator.getCommitData();
+            if (!IndexFieldOptions.fromCommitData(commitData).equals(IndexFieldOptions.fromPreferences())) {
+                logger.info("... index fields do not match the field settings, rebuilding it");
+                rebuildIndex();
+                return;
+            }
+            if (SearchTabIndexer.isPrebuilt(commitData)) {
+                rerenderIndex(); // the index was rendered outside of the editor
+            }
+            if (fingerprint.getValue().equals(OntologyFingerprint.fromCommitData(commitData))) {
+                logger.info("... index matches the ontologies, reusing it");
+                return;
+            }
+        }
+        catch (IOException | AlreadyClosedException e) {
+            logger.error("... read index fingerprint failed", e);
+            return;
+        }
+        synchronizingIndex(delegator, fingerprint);
+    }
+
+    private void synchronizingIndex(SearchTabIndexDelegator delegator, OntologyFingerprint fingerprint) {
+        logger.info("Synchronizing index with the ontologies");
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        fireIndexingStarted();
+        try {
+            int count;
+            synchronized (commitLock) {
+                count = indexer.doSynchronize(delegator, searchContext);
+            }
+            commitIndex(delegator, changeJournal, fingerprint);
+            logger.info("... synchronized {} content item(s) in {} ms", count, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        }
+        catch (IOException | AlreadyClosedException e) {
+            logger.error("... synchronize index failed", e);
+        }
+        finally {
+            fireIndexingFinished();
+        }
+    }
+
+    /*
+     * Reads the fingerprint that a build stored with the index it built.
+     */
+    private static OntologyFingerprint readFingerprint(SearchTabIndexDelegator delegator) throws IOException {
+        return OntologyFingerprint.parse(OntologyFingerprint.fromCommitData(delegator.getCommitData()));
+    }
+
+    private static Set<String> getContentKeys(List<OWLOntologyChange> changes) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (OWLOntologyChange change : changes) {
+            if (change instanceof RemoveAxiom) {
+                keys.addAll(SearchTabRemoveChangeSetHandler.getRemovedKeys((RemoveAxiom) change));
+            }
+            else if (change.isAxiomChange()) {
+                keys.add(ContentKey.of(change.getOntology().getOntologyID(), change.getAxiom()));
+            }
+        }
+        return keys;
+    }
+
+    private static Set<String> getReferencedIris(List<OWLOntologyChange> changes) {
+        Set<String> iris = new LinkedHashSet<>();
+        for (OWLOntologyChange change : changes) {
+            if (change.isAxiomChange()) {
+                iris.addAll(SearchTabIndexer.getReferencedIris(change.getAxiom()));
+            }
+        }
+        return iris;
+    }
+
+    /*
+     * Annotation changes may alter how their subjects are rendered, e.g., when a label
+     * is edited. The documents mentioning those entities are refreshed in a separate
+     * task, so that the update itself is visible to queries right away.
+     */
+    private void refreshingRenderings(Set<OWLEntity> entities) {
+        if (indexDelegator == null) {
+            return;
+        }
+        try {
+            int count = indexer.doRefreshRenderings(indexDelegator, searchContext, entities);
+            if (count > 0) {
+                logger.info("... re-indexed " + count + " document(s) after a rendering change");
+            }
+        }
+        catch (IOException e) {
+            logger.error("... refresh renderings failed", e);
+        }
+    }
+
+    /**
+     * Re-renders the display names stored in the index after the entity renderer has
+     * changed. The documents are scanned in the background while the current index
+     * keeps serving queries, and a newer renderer change cancels an ongoing pass.
+     */
+    private void rerenderIndex() {
+        if (indexDelegator == null) {
+            return;
+        }
+        logger.info("Entity renderer changed, re-rendering index");
+        final long pass = renderingPass.incrementAndGet();
+        rebuildService.submit(() -> rerenderingIndex(pass));
+    }
+
+    private void rerenderingIndex(long pass) {
+        SearchTabIndexDelegator delegator = indexDelegator;
+        if (delegator == null || pass != renderingPass.get()) {
+            return;
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Map<String, List<Document>> documents;
+        try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+            documents = indexer.doRerender(snapshot.getSearcher(), searchContext, () -> pass != renderingPass.get());
+        }
+        catch (IOException | UncheckedIOException | AlreadyClosedException e) {
+            logger.error("... re-render index failed", e);
+            return;
+        }
+        if (pass != renderingPass.get()) {
+            return; // superseded by a newer renderer change
+        }
+        logger.info("... re-rendered {} content item(s) in {} ms", documents.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        updateService.submit(() -> {
+            if (delegator != indexDelegator) {
+                return; // the index was swapped or closed in the meantime
+            }
+            try {
+                indexer.doReplace(delegator, documents);
+                Map<String, String> commitData = delegator.getCommitData();
+                if (SearchTabIndexer.isPrebuilt(commitData)) {
+                    delegator.commit(SearchTabIndexer.withPrebuiltMark(commitData, false));
+                }
+            }
+            catch (IOException e) {
+                logger.error("... replace re-rendered documents failed", e);
+            }
+        });
+    }
+
+    private Set<OWLEntity> getAnnotatedEntities(List<OWLOntologyChange> changes) {
+        Set<OWLEntity> entities = new HashSet<>();
+        for (OWLOntologyChange change : changes) {
+            if (change.isAxiomChange() && change.getAxiom() instanceof OWLAnnotationAssertionAxiom) {
+                OWLAnnotationSubject subject = ((OWLAnnotationAssertionAxiom) change.getAxiom()).getSubject();
+                if (subject instanceof IRI) {
+                    entities.addAll(editorKit.getOWLModelManager().getOWLEntityFinder().getEntities((IRI) subject));
+                }
+            }
+        }
+        return entities;
+    }
+
+    private void updatingIndex(SearchTabIndexDelegator delegator, List<? extends OWLOntologyChange> changes)
+            throws IOException {
+        updatingIndex(indexer, delegator, changes);
+    }
+
+    private void updatingIndex(SearchTabIndexer indexer, SearchTabIndexDelegator delegator,
+            List<? extends OWLOntologyChange> changes) throws IOException {
+        SearchTabRemoveChangeSetHandler removeHandler = new SearchTabRemoveChangeSetHandler(editorKit);
+        SearchTabAddChangeSetHandler addHandler = new SearchTabAddChangeSetHandler(editorKit, indexer.getFieldOptions());
+        for (OWLOntologyChange change : changes) {
+            if (change instanceof RemoveAxiom) {
+                removeHandler.visit((RemoveAxiom) change);
+            }
+            else if (change instanceof AddAxiom) {
+                addHandler.visit((AddAxiom) change);
+            }
+        }
+        indexer.doUpdate(delegator, removeHandler.getPendingRemovals(), addHandler.getPendingDocuments());
+    }
+
+    private void recordChangesDuringRebuild(List<? extends OWLOntologyChange> changes) {
+        synchronized (changesDuringRebuild) {
+            if (rebuildInProgress.get()) {
+                changesDuringRebuild.addAll(changes);
+            }
+        }
+    }
+
+    private List<OWLOntologyChange> stopRecordingChanges() {
+        synchronized (changesDuringRebuild) {
+            List<OWLOntologyChange> changes = new ArrayList<>(changesDuringRebuild);
+            changesDuringRebuild.clear();
+            rebuildInProgress.set(false);
+            return changes;
+        }
+    }
+
+    /*
+     * Runs on the rebuild thread. The shadow index is built by its own indexer, so that
+     * the updates applied to the current index keep using the fields it was built with
+     * until the swap. The swap itself is handed over to the update thread so that it
+     * never happens in the middle of an index update. Searches still running on the
+     * old index finish on their snapshot.
+     */
+    private void rebuildingIndex(IndexFieldOptions fieldOptions, IndexDirectoryLayout layout, long epoch) {
+        Path shadowLocation = null;
+        SearchTabIndexDelegator shadowDelegator = null;
+        boolean handedOver = false;
+        fireIndexingStarted();
+        try {
+            SearchTabIndexer shadowIndexer = new SearchTabIndexer(editorKit);
+            shadowIndexer.setFieldOptions(fieldOptions);
+            Directory shadowDirectory;
+            if (layout != null) {
+                shadowLocation = layout.newGeneration();
+                logger.info("... building shadow index at " + shadowLocation);
+                long indexSize = IndexDirectoryStrategy.measureIndexSize(layout.getCurrentLocation());
+                shadowDirectory = newDirectoryStrategy().openOnDisk(shadowLocation, indexSize);
+            }
+            else {
+                shadowDirectory = newDirectoryStrategy().openInMemory();
+            }
+            shadowDelegator = SearchTabIndexDelegator.getInstance(shadowDirectory, shadowIndexer.getIndexWriterConfig());
+            final boolean usedSharedIndexes = buildIndex(shadowIndexer, shadowDelegator, layout);
+            final SearchTabIndexDelegator rebuiltDelegator = shadowDelegator;
+            final Path rebuiltLocation = shadowLocation;
+            updateService.submit(() -> {
+                swapIndex(shadowIndexer, rebuiltDelegator, layout, rebuiltLocation, epoch);
+                if (usedSharedIndexes) {
+                    rerenderIndex();
+                }
+            });
+            handedOver = true;
+        }
+        catch (IOException e) {
+            logger.error("... rebuild index failed", e);
+        }
+        finally {
+            if (!handedOver) {
+                stopRecordingChanges();
+                discardShadowIndex(shadowDelegator, layout, shadowLocation);
+            }
+            fireIndexingFinished();
+        }
+    }
+
+    private void swapIndex(SearchTabIndexer shadowIndexer, SearchTabIndexDelegator shadowDelegator,
+            IndexDirectoryLayout layout, Path shadowLocation, long epoch) {
+        List<OWLOntologyChange> missedChanges = stopRecordingChanges();
+        if (epoch != indexEpoch.get()) {
+            logger.info("... active ontology changed during rebuild, discarding the rebuilt index");
+            discardShadowIndex(shadowDelegator, layout, shadowLocation);
+            return;
+        }
+        OntologyFingerprint fingerprint;
+        try {
+            fingerprint = readFingerprint(shadowDelegator);
+            if (!missedChanges.isEmpty()) {
+                logger.info("... replaying " + missedChanges.size() + " change(s) made during rebuild");
+                updatingIndex(shadowIndexer, shadowDelegator, missedChanges);
+                if (fingerprint != null) {
+                    fingerprint.apply(missedChanges);
+                }
+                commitIndex(shadowDelegator, null, fingerprint);
+            }
+        }
+        catch (IOException e) {
+            logger.error("... replay changes on rebuilt index failed", e);
+            discardShadowIndex(shadowDelegator, layout, shadowLocation);
+            return;
+        }
+        try {
+            shadowDelegator.refresh();
         }
         catch (IOException e) {
-            logger.error("... update index failed");
+            logger.error("... refresh rebuilt index failed", e);
+        }
+        SearchTabIndexDelegator oldDelegator = indexDelegator;
+        indexer.setFieldOptions(shadowIndexer.getFieldOptions());
+        indexDelegator = shadowDelegator;
+        indexFingerprint = fingerprint;
+        disposeIndexDelegator(oldDelegator);
+        uncommittedChanges = 0;
+        try {
+            changeJournal = (layout != null) ? IndexChangeJournal.open(shadowLocation) : null;
+            if (layout != null) {
+                layout.publish(shadowLocation);
+                layout.reclaim();
+            }
+        }
+        catch (IOException e) {
+            logger.error("... reclaim old index directory failed", e);
+        }
+        logger.info("... rebuilt index is now in use");
+        if (!shadowIndexer.getFieldOptions().equals(IndexFieldOptions.fromPreferences())) {
+            logger.info("... field settings changed during rebuild, rebuilding again");
+            rebuildIndex();
+        }
+    }
+
+    private void discardShadowIndex(SearchTabIndexDelegator shadowDelegator, IndexDirectoryLayout layout,
+            Path shadowLocation) {
+        disposeIndexDelegator(shadowDelegator);
+        try {
+            if (layout != null && shadowLocation != null) {
+                layout.discard(shadowLocation);
+            }
+        }
+        catch (IOException e) {
+            logger.error("Failed to discard shadow index at " + shadowLocation, e);
         }
     }
 
@@ -147,18 +701,42 @@ public class SearchTabManager extends LuceneSearcher {
         progressMonitors.add(pm);
     }
 
+    /**
+     * Stops all the background work. Searches, suggestions and rebuilds are cancelled,
+     * while the index is closed on the update thread once the update running there, if
+     * any, has finished, so that the updates applied so far get committed.
+     */
     @Override
     public void dispose() {
+        indexEpoch.incrementAndGet();
+        renderingPass.incrementAndGet();
+        updateQueue.dispose();
         editorKit.getOWLModelManager().removeOntologyChangeListener(updateIndexListener);
         editorKit.getModelManager().removeListener(ontologyChangedListener);
-        disposeIndexDelegator();
+        commitScheduler.shutdownNow();
+        service.shutdownNow();
+        suggestService.shutdownNow();
+        rebuildService.shutdownNow();
+        updateService.submit(this::closeIndex);
+        updateService.shutdown();
+    }
+
+    /*
+     * Commits the updates applied so far before closing the index, so that the next
+     * session does not need to replay them.
+     */
+    private void closeIndex() {
+        commitIndex(indexDelegator, changeJournal, indexFingerprint);
+        disposeIndexDelegator(indexDelegator);
+        indexDelegator = null;
+        changeJournal = null;
+        indexFingerprint = null;
     }
 
-    private void disposeIndexDelegator() {
+    private static void disposeIndexDelegator(SearchTabIndexDelegator delegator) {
         try {
-            if (indexDelegator != null) {
-                indexDelegator.dispose();
-                indexDelegator = null;
+            if (delegator != null) {
+                delegator.dispose();
             }
         }
         catch (IOException e) {
@@ -171,9 +749,43 @@ public class SearchTabManager extends LuceneSearcher {
         return indexer;
     }
 
+    /**
+     * Returns the searcher of the snapshot pinned by the search running on the current
+     * thread, so that all the Lucene queries issued while evaluating one query tree
+     * see the same point-in-time view of the index. Outside of a search there is no
+     * snapshot to read from, since an unpinned searcher could be closed under the caller.
+     */
     @Override
     protected IndexSearcher getIndexSearcher() throws IOException {
-        return indexDelegator.getSearcher();
+        IndexSnapshot snapshot = currentSnapshot.get();
+        if (snapshot == null) {
+            throw new IOException("No index snapshot is pinned by the current thread");
+        }
+        return snapshot.getSearcher();
+    }
+
+    /*
+     * Pins a snapshot for the search about to run on the current thread. Updates
+     * committed in the meantime become visible to the next search only.
+     */
+    private IndexSnapshot pinSnapshot() throws IOException {
+        SearchTabIndexDelegator delegator = indexDelegator;
+        if (delegator == null) {
+            throw new IOException("Index is not available");
+        }
+        IndexSnapshot snapshot = delegator.openSnapshot();
+        currentSnapshot.set(snapshot);
+        return snapshot;
+    }
+
+    private void unpinSnapshot(IndexSnapshot snapshot) {
+        currentSnapshot.remove();
+        try {
+            snapshot.close();
+        }
+        catch (IOException | AlreadyClosedException e) {
+            logger.debug("Failed to close index snapshot", e);
+        }
     }
 
     @Override
@@ -198,64 +810,149 @@ public class SearchTabManager extends LuceneSearcher {
         service.submit(new SearchTabCallable(lastSearchId.incrementAndGet(), userQuery, searchTabResultHandler));
     }
 
-    public void stopSearch() {
-        stopSearch.set(true);
+    /**
+     * Looks up the values listed in the given file, one value per line, as literals or
+     * IRIs of the given property in a single pass over the index. The future completes
+     * with the entities matched by each value.
+     */
+    public Future<Map<String, Set<OWLEntity>>> performBulkMatch(OWLProperty property, Path valuesFile) {
+        return service.submit(() -> {
+            IndexSnapshot snapshot = pinSnapshot();
+            try (BufferedReader reader = Files.newBufferedReader(valuesFile, StandardCharsets.UTF_8)) {
+                BasicQuery.Factory queryFactory = new BasicQuery.Factory(searchContext, this, getIndexedFieldOptions());
+                return queryFactory.createBulkMatchFilter(property, reader).evaluateMatches();
+            }
+            finally {
+                unpinSnapshot(snapshot);
+            }
+        });
     }
 
-    private Directory openIndexDirectory() {
-        if (LuceneIndexPreferences.useInMemoryIndexStoring() && isOntologySizeBelowMaximumStoringLimit()) {
-            return openIndexDirectoryInMemory();
-        } else {
-            return openIndexDirectoryInDisk();
-        }
+    /**
+     * Looks up completions of the given text among the values of the given property.
+     * The lookup runs on a thread of its own, so that it is neither held up by a running
+     * search nor blocks the caller, e.g., the event dispatch thread.
+     */
+    public Future<List<String>> getSuggestions(OWLProperty property, String prefix, int limit) {
+        return suggestService.submit(() -> {
+            SearchTabIndexDelegator delegator = indexDelegator;
+            if (delegator == null) {
+                return Collections.<String>emptyList();
+            }
+            try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+                return ValueSuggester.lookup(snapshot.getSearcher().getIndexReader(), property.getIRI().toString(),
+                        prefix, limit);
+            }
+            catch (AlreadyClosedException e) {
+                return Collections.<String>emptyList(); // the index was replaced meanwhile
+            }
+        });
     }
 
-    private void removeIndexDirectory() {
-        final IRI ontologyIri = getActiveOntology().getOntologyID().getOntologyIRI().get();
-        LuceneIndexPreferences.removeIndexRecord(ontologyIri);
+    public void stopSearch() {
+        stopSearch.set(true);
     }
 
-    private boolean isOntologySizeBelowMaximumStoringLimit() {
-        Optional<File> ontologyFile = getOntologyFile(getActiveOntology());
-        if (!ontologyFile.isPresent()) {
-            return false; // the ontology has no physical file
+    /*
+     * Keeps the index in memory only if in-memory storing is enabled and the index fits
+     * the in-memory budget. The size is measured from the index persisted by an earlier
+     * session, or estimated from the ontologies if there is none.
+     */
+    private Directory openIndexDirectory() {
+        IndexDirectoryStrategy strategy = newDirectoryStrategy();
+        final IRI ontologyIri = getActiveOntology().getOntologyID().getOntologyIRI().get();
+        String indexLocation = LuceneIndexPreferences.getIndexDirectoryLocation(ontologyIri);
+        try {
+            IndexDirectoryLayout layout = new IndexDirectoryLayout(Paths.get(indexLocation));
+            indexCache = new IndexDiskCache(layout.getRecordLocation().getParent());
+            Path currentLocation = layout.getCurrentLocation();
+            long indexSize = IndexDirectoryStrategy.measureIndexSize(currentLocation);
+            Path prebuiltLocation = null;
+            if (indexSize == 0) {
+                prebuiltLocation = findPrebuiltIndex();
+                if (prebuiltLocation != null) {
+                    indexSize = IndexDirectoryStrategy.measureIndexSize(prebuiltLocation);
+                }
+                else {
+                    indexSize = IndexDirectoryStrategy.estimateIndexSize(searchContext.getOntologies());
+                }
+            }
+            logger.info("... expected index size is {} MB", indexSize / (1024 * 1024));
+            if (LuceneIndexPreferences.useInMemoryIndexStoring() && strategy.fitsInMemory(indexSize)) {
+                return openIndexDirectoryInMemory(strategy, prebuiltLocation);
+            } else {
+                if (prebuiltLocation != null) {
+                    currentLocation = importPrebuiltIndex(layout, prebuiltLocation);
+                }
+                return openIndexDirectoryInDisk(strategy, layout, currentLocation, indexSize);
+            }
         }
-        boolean shouldStoreInDisk = false;
-        int fileSizeInMegaBytes = (int) (ontologyFile.get().length() / (1024 * 1024));
-        int maxFileSize = LuceneIndexPreferences.getMaxSizeForInMemoryIndexStoring(); // in MB
-        if (fileSizeInMegaBytes > maxFileSize) {
-            shouldStoreInDisk = true;
-        } else {
-            shouldStoreInDisk = false;
+        catch (IOException e) {
+            logger.error("... open index directory failed");
+            throw new RuntimeException(e);
         }
-        return shouldStoreInDisk;
     }
 
-    private Directory openIndexDirectoryInMemory() {
+    private static IndexDirectoryStrategy newDirectoryStrategy() {
+        return new IndexDirectoryStrategy(LuceneIndexPreferences.getMaxSizeForInMemoryIndexStoring(),
+                SearchTabIndexPreferences.getPreloadBudget());
+    }
+
+    private Directory openIndexDirectoryInMemory(IndexDirectoryStrategy strategy, Path prebuiltLocation)
+            throws IOException {
         logger.info("Opening index directory from RAM memory");
-        return new RAMDirectory();
+        indexLayout = null;
+        changeJournal = null;
+        if (prebuiltLocation != null) {
+            logger.info("... loading prebuilt index from " + prebuiltLocation);
+            return strategy.openInMemory(prebuiltLocation);
+        }
+        return strategy.openInMemory();
     }
 
-    private Directory openIndexDirectoryInDisk() {
-        final IRI ontologyIri = getActiveOntology().getOntologyID().getOntologyIRI().get();
-        String indexLocation = LuceneIndexPreferences.getIndexDirectoryLocation(ontologyIri);
-        try {
-            logger.info("Opening index directory at " + indexLocation);
-            return FSDirectory.open(Paths.get(indexLocation));
+    /*
+     * Looks for an index built by the HeadlessIndexBuilder next to the ontology file,
+     * and returns the location of its current generation.
+     */
+    private Path findPrebuiltIndex() throws IOException {
+        URI physicalUri = editorKit.getOWLModelManager().getOntologyPhysicalURI(getActiveOntology());
+        if (physicalUri == null || !"file".equals(physicalUri.getScheme())) {
+            return null;
         }
-        catch (IOException e) {
-            logger.error("... open index directory failed");
-            throw new RuntimeException(e);
+        Path location = HeadlessIndexBuilder.getPrebuiltIndexLocation(Paths.get(physicalUri));
+        if (!Files.isDirectory(location)) {
+            return null;
         }
+        Path currentLocation = new IndexDirectoryLayout(location).getCurrentLocation();
+        return (IndexDirectoryStrategy.measureIndexSize(currentLocation) > 0) ? currentLocation : null;
     }
 
-    private Optional<File> getOntologyFile(OWLOntology targetOntology) {
-        URI physicalLocationUri = editorKit.getOWLModelManager().getOntologyPhysicalURI(targetOntology);
-        File ontologyFile = null;
-        if (!physicalLocationUri.equals(URI.create(""))) {
-            ontologyFile = new File(physicalLocationUri);
+    /*
+     * Copies a prebuilt index into a new generation of the index record location. The
+     * prebuilt index itself is left untouched, as it may be shipped read-only.
+     */
+    private static Path importPrebuiltIndex(IndexDirectoryLayout layout, Path prebuiltLocation) throws IOException {
+        logger.info("... importing prebuilt index from " + prebuiltLocation);
+        Path generation = layout.newGeneration();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(prebuiltLocation)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file) && !file.getFileName().toString().equals(IndexChangeJournal.JOURNAL_FILE)) {
+                    Files.copy(file, generation.resolve(file.getFileName()));
+                }
+            }
         }
-        return Optional.ofNullable(ontologyFile);
+        layout.publish(generation);
+        layout.reclaim();
+        return generation;
+    }
+
+    private Directory openIndexDirectoryInDisk(IndexDirectoryStrategy strategy, IndexDirectoryLayout layout,
+            Path currentLocation, long indexSize) throws IOException {
+        logger.info("Opening index directory at " + currentLocation);
+        indexLayout = layout;
+        IndexDiskCache.touch(layout.getRecordLocation());
+        changeJournal = IndexChangeJournal.open(currentLocation);
+        return strategy.openOnDisk(currentLocation, indexSize);
     }
 
     private void initIndexRecord() {
@@ -268,13 +965,31 @@ public class SearchTabManager extends LuceneSearcher {
         logger.info("Initializing index delegator");
         try {
             final Directory indexDirectory = openIndexDirectory();
-            indexDelegator = IndexDelegator.getInstance(indexDirectory, indexer.getIndexWriterConfig());
+            indexDelegator = SearchTabIndexDelegator.getInstance(indexDirectory, indexer.getIndexWriterConfig());
         } catch (IOException e) {
             logger.error("... initialize index delegator failed");
             throw new RuntimeException(e);
         }
     }
 
+    private boolean isBuildIncomplete() {
+        try {
+            IndexBuildCheckpoint checkpoint = SearchTabIndexer.getBuildCheckpoint(indexDelegator);
+            if (checkpoint == null) {
+                logger.info("... index was built with an older document layout, building it again");
+                return true;
+            }
+            if (!checkpoint.isComplete()) {
+                logger.info("... found an interrupted index build, resuming from the last checkpoint");
+                return true;
+            }
+        }
+        catch (IOException e) {
+            logger.error("... read index checkpoint failed", e);
+        }
+        return false;
+    }
+
     private List<SearchQuery> prepareQuery(String searchString) {
         SearchInput searchInput = searchStringParser.parse(searchString);
         LuceneSearchQueryBuilder builder = new LuceneSearchQueryBuilder(this);
@@ -287,8 +1002,14 @@ public class SearchTabManager extends LuceneSearcher {
         logger.info("Building index");
         fireIndexingStarted();
         try {
-            indexer.doIndex(indexDelegator, searchContext, progress -> fireIndexingProgressed(progress));
-            LuceneIndexPreferences.updateIndexChecksum(getActiveOntology());
+            boolean usedSharedIndexes = buildIndex(indexer, indexDelegator, indexLayout);
+            if (changeJournal != null) {
+                changeJournal.clear(); // the new build already covers the journaled updates
+            }
+            indexFingerprint = readFingerprint(indexDelegator);
+            if (usedSharedIndexes) {
+                rerenderIndex();
+            }
         }
         catch (IOException e) {
             logger.error("... build index failed", e);
@@ -298,6 +1019,155 @@ public class SearchTabManager extends LuceneSearcher {
         }
     }
 
+    /*
+     * Builds the index of the ontologies in the search context. The imported ontologies
+     * of an on-disk index come from the shared index store, which indexes each of them
+     * at most once across all projects. An imported ontology whose shared index cannot
+     * be built or opened, e.g., because it was evicted meanwhile, is indexed directly.
+     * Returns true if any came from the store, in which case their display names still
+     * need to be rendered in the context of the active ontology.
+     */
+    private boolean buildIndex(SearchTabIndexer indexer, SearchTabIndexDelegator delegator, IndexDirectoryLayout layout)
+            throws IOException {
+        Map<OWLOntology, DirectoryReader> sharedIndexes = new HashMap<>();
+        List<Directory> sharedDirectories = new ArrayList<>();
+        try {
+            if (layout != null) {
+                SharedIndexStore store = getSharedIndexStore(layout);
+                String rendererId = editorKit.getOWLModelManager().getOWLEntityRenderer().getClass().getName();
+                for (OWLOntology ontology : searchContext.getOntologies()) {
+                    if (!ontology.equals(getActiveOntology()) && !ontology.getOntologyID().isAnonymous()) {
+                        String key = SharedIndexStore.getKey(ontology, rendererId, indexer.getFieldOptions());
+                        try {
+                            Path location = store.findOrBuild(key, ontology,
+                                    indexer, progress -> fireIndexingProgressed(progress));
+                            IndexDiskCache.touch(location);
+                            Directory directory = FSDirectory.open(location);
+                            sharedDirectories.add(directory);
+                            sharedIndexes.put(ontology, DirectoryReader.open(directory));
+                        }
+                        catch (IOException e) {
+                            logger.warn("... shared index of {} is not available, indexing it directly",
+                                    ontology.getOntologyID(), e);
+                        }
+                    }
+                }
+            }
+            indexer.doIndex(delegator, searchContext.getOntologies(), sharedIndexes,
+                    progress -> fireIndexingProgressed(progress));
+        }
+        finally {
+            for (DirectoryReader reader : sharedIndexes.values()) {
+                reader.close();
+            }
+            for (Directory directory : sharedDirectories) {
+                directory.close();
+            }
+        }
+        return !sharedIndexes.isEmpty();
+    }
+
+    private static SharedIndexStore getSharedIndexStore(IndexDirectoryLayout layout) {
+        return new SharedIndexStore(new IndexDiskCache(layout.getRecordLocation().getParent())
+                .getSharedIndexStoreLocation());
+    }
+
+    /*
+     * Deletes the least recently opened index directories of other ontologies and of
+     * the shared index store until all of them fit the disk budget again.
+     */
+    private void evictingIndexCache() {
+        final IndexDiskCache cache = indexCache;
+        final long budget = SearchTabIndexPreferences.getDiskBudget() * 1024L * 1024L;
+        if (cache == null || budget == 0) {
+            return;
+        }
+        try {
+            Path inUse = (indexLayout != null) ? indexLayout.getRecordLocation() : null;
+            long reclaimed = cache.evict(budget, inUse);
+            if (reclaimed > 0) {
+                logger.info("... reclaimed {} MB of index directories", reclaimed / (1024 * 1024));
+            }
+        }
+        catch (IOException e) {
+            logger.error("... evict index directories failed", e);
+        }
+    }
+
+    /**
+     * Returns the total size in bytes of the index directories on disk, or -1 if no
+     * index has been opened yet.
+     */
+    public long getIndexCacheSize() {
+        final IndexDiskCache cache = indexCache;
+        if (cache == null) {
+            return -1;
+        }
+        try {
+            return cache.getSize();
+        }
+        catch (IOException e) {
+            logger.error("... measure index directories failed", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the optional fields that the current index holds. These may differ from
+     * the preferences until the index is rebuilt.
+     */
+    public IndexFieldOptions getIndexedFieldOptions() {
+        final SearchTabIndexDelegator delegator = indexDelegator;
+        if (delegator == null) {
+            return IndexFieldOptions.NONE;
+        }
+        try {
+            return IndexFieldOptions.fromCommitData(delegator.getCommitData());
+        }
+        catch (IOException | AlreadyClosedException e) {
+            logger.error("... read index commit data failed", e);
+            return IndexFieldOptions.NONE;
+        }
+    }
+
+    /**
+     * Estimates the size in bytes that the n-grams take up in the current index, from
+     * the share of the n-gram postings in all the postings of the index. Returns -1 if
+     * there is no index.
+     */
+    public long getNGramFieldSize() {
+        final SearchTabIndexDelegator delegator = indexDelegator;
+        if (delegator == null) {
+            return -1;
+        }
+        try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+            IndexReader reader = snapshot.getSearcher().getIndexReader();
+            long nGramPostings = 0;
+            long allPostings = 0;
+            for (String field : MultiFields.getFields(reader)) {
+                Terms terms = MultiFields.getTerms(reader, field);
+                long postings = (terms != null) ? Math.max(0, terms.getSumTotalTermFreq()) : 0;
+                allPostings += postings;
+                if (field.equals(SearchTabIndexField.ANNOTATION_TEXT_NGRAM)) {
+                    nGramPostings = postings;
+                }
+            }
+            if (allPostings == 0) {
+                return 0;
+            }
+            long indexSize = 0;
+            Directory directory = delegator.getIndexDirectory();
+            for (String file : directory.listAll()) {
+                indexSize += directory.fileLength(file);
+            }
+            return (long) (indexSize * ((double) nGramPostings / allPostings));
+        }
+        catch (IOException | AlreadyClosedException e) {
+            logger.error("... measure n-gram field failed", e);
+            return -1;
+        }
+    }
+
     private class SearchCallable implements Runnable {
         private long searchId;
         private List<SearchQuery> searchQueries;
@@ -313,24 +1183,37 @@ public class SearchTabManager extends LuceneSearcher {
         public void run() {
             logger.debug("Starting search {}", searchId);
             Stopwatch stopwatch = Stopwatch.createStarted();
+            IndexSnapshot snapshot;
+            try {
+                snapshot = pinSnapshot();
+            }
+            catch (IOException | AlreadyClosedException e) {
+                logger.error("Error while executing the query: {}", e);
+                return;
+            }
             fireSearchStarted();
             Set<SearchResult> finalResults = new HashSet<>();
-            for (SearchQuery query : searchQueries) {
-                if (!isLatestSearch()) {
-                    // New search started
-                    logger.debug("... terminating search {} prematurely", searchId);
-                    return;
-                }
-                try {
-                    ResultDocumentHandler handler = new ResultDocumentHandler(editorKit);
-                    logger.debug("... executing query " + query);
-                    query.evaluate(handler, progress -> fireSearchingProgressed(progress));
-                    SearchUtils.intersect(finalResults, handler.getSearchResults());
-                }
-                catch (QueryEvaluationException e) {
-                    logger.error("Error while executing the query: {}", e);
+            try {
+                for (SearchQuery query : searchQueries) {
+                    if (!isLatestSearch()) {
+                        // New search started
+                        logger.debug("... terminating search {} prematurely", searchId);
+                        return;
+                    }
+                    try {
+                        ResultDocumentHandler handler = new ResultDocumentHandler(editorKit);
+                        logger.debug("... executing query " + query);
+                        query.evaluate(handler, progress -> fireSearchingProgressed(progress));
+                        SearchUtils.intersect(finalResults, handler.getSearchResults());
+                    }
+                    catch (QueryEvaluationException e) {
+                        logger.error("Error while executing the query: {}", e);
+                    }
                 }
             }
+            finally {
+                unpinSnapshot(snapshot);
+            }
             fireSearchFinished();
             stopwatch.stop();
             logger.debug("... finished search {} in {} ms ({} results)", searchId, stopwatch.elapsed(TimeUnit.MILLISECONDS), finalResults.size());
@@ -366,7 +1249,9 @@ public class SearchTabManager extends LuceneSearcher {
         public void run() {
             logger.debug("Starting search {}", searchId);
             Stopwatch stopwatch = Stopwatch.createStarted();
+            IndexSnapshot snapshot = null;
             try {
+                snapshot = pinSnapshot();
                 logger.debug("... executing query " + pluginQuery);
                 fireSearchStarted();
                 Set<OWLEntity> finalResults = pluginQuery.evaluate(progress -> fireSearchingProgressed(progress), stopSearch);
@@ -375,9 +1260,14 @@ public class SearchTabManager extends LuceneSearcher {
                 logger.debug("... finished search {} in {} ms ({} results)", searchId, stopwatch.elapsed(TimeUnit.MILLISECONDS), finalResults.size());
                 showResults(finalResults);
             }
-            catch (QueryEvaluationException e) {
+            catch (QueryEvaluationException | IOException | AlreadyClosedException e) {
                 logger.error("Error while executing the query: {}", e);
             }
+            finally {
+                if (snapshot != null) {
+                    unpinSnapshot(snapshot);
+                }
+            }
         }
 
         private void showResults(final Set<OWLEntity> results) {
@@ -0,0 +1,143 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import com.google.common.hash.Hashing;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+
+/**
+ * A content-addressed store of the indexes of single ontologies, shared by all the
+ * projects that import them. An entry is keyed by the ontology ID (including the
+ * version IRI), the fingerprint of the ontology's axioms, the document layout and the
+ * renderer that produced the display names, so an entry never has to be invalidated:
+ * a changed ontology simply maps to a different key.
+ * <p>
+ * Entries are built in a temporary directory, marked as complete and moved into place
+ * in one step. Only a directory carrying the mark is taken as an entry, so neither a
+ * partially built nor a partially deleted entry is ever reused.
+ */
+public class SharedIndexStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedIndexStore.class);
+
+    private static final String TEMP_PREFIX = "tmp-";
+
+    private static final String COMPLETE_MARKER = "search-tab-complete";
+
+    private final Path storeLocation;
+
+    public SharedIndexStore(Path storeLocation) {
+        this.storeLocation = storeLocation;
+    }
+
+    public Path getStoreLocation() {
+        return storeLocation;
+    }
+
+    /**
+     * Returns the key of the index of the given ontology, rendered by the given renderer
+     * and with the given optional fields.
+     */
+    public static String getKey(OWLOntology ontology, String rendererId, IndexFieldOptions fieldOptions) {
+        String fingerprint = OntologyFingerprint.of(Collections.singleton(ontology)).getValue();
+        return Hashing.murmur3_128().newHasher()
+                .putString(ontology.getOntologyID().toString(), StandardCharsets.UTF_8)
+                .putChar('\u0000')
+                .putString(fingerprint, StandardCharsets.UTF_8)
+                .putChar('\u0000')
+                .putInt(IndexBuildCheckpoint.SCHEMA_VERSION)
+                .putString(rendererId, StandardCharsets.UTF_8)
+                .putChar('\u0000')
+                .putString(fieldOptions.getValue(), StandardCharsets.UTF_8)
+                .hash().toString();
+    }
+
+    /**
+     * Returns the location of the entry with the given key, or null if there is none.
+     */
+    public Path find(String key) {
+        Path location = storeLocation.resolve(key);
+        return Files.isRegularFile(location.resolve(COMPLETE_MARKER)) ? location : null;
+    }
+
+    /**
+     * Checks if the given directory of the store is an entry being built.
+     */
+    static boolean isTemporary(Path location) {
+        return location.getFileName().toString().startsWith(TEMP_PREFIX);
+    }
+
+    /**
+     * Returns the location of the entry with the given key, building it from the given
+     * ontology first if there is none.
+     */
+    public Path findOrBuild(String key, OWLOntology ontology, SearchTabIndexer indexer,
+            SearchTabIndexer.IndexingProgressListener listener) throws IOException {
+        Path location = find(key);
+        if (location != null) {
+            logger.info("... reusing shared index of {}", ontology.getOntologyID());
+            return location;
+        }
+        location = storeLocation.resolve(key);
+        if (Files.exists(location)) {
+            logger.info("... discarding incomplete shared index {}", location);
+            try {
+                IndexDiskCache.discard(location);
+            }
+            catch (NoSuchFileException e) {
+                // discarded concurrently by another session
+            }
+        }
+        logger.info("... building shared index of {}", ontology.getOntologyID());
+        Files.createDirectories(storeLocation);
+        Path temp = Files.createTempDirectory(storeLocation, TEMP_PREFIX);
+        try {
+            SearchTabIndexDelegator delegator = SearchTabIndexDelegator.getInstance(FSDirectory.open(temp),
+                    indexer.getIndexWriterConfig());
+            try {
+                indexer.doIndex(delegator, Collections.singleton(ontology), listener);
+            }
+            finally {
+                delegator.dispose();
+            }
+            Files.deleteIfExists(temp.resolve(IndexWriter.WRITE_LOCK_NAME)); // entries are only read
+            Files.createFile(temp.resolve(COMPLETE_MARKER));
+            Files.move(temp, location, StandardCopyOption.ATOMIC_MOVE);
+            return location;
+        }
+        catch (IOException e) {
+            deleteQuietly(temp);
+            if (find(key) != null) {
+                return find(key); // built concurrently by another session
+            }
+            throw e;
+        }
+    }
+
+    private static void deleteQuietly(Path directory) {
+        try {
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for (Path file : stream) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(directory);
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Failed to delete " + directory, e);
+        }
+    }
+}
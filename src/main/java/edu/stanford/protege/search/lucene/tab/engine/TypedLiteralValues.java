@@ -0,0 +1,104 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the value of XSD numeric and date literals, so that they can be indexed as
+ * points and searched by range. Numbers are read as doubles and dates as milliseconds
+ * since the epoch. Dates and date-times without a time zone are taken to be in UTC.
+ */
+public final class TypedLiteralValues {
+
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+    private static final Set<String> NUMERIC_DATATYPES = new HashSet<>(Arrays.asList(
+            XSD + "decimal", XSD + "integer", XSD + "double", XSD + "float",
+            XSD + "long", XSD + "int", XSD + "short", XSD + "byte",
+            XSD + "nonNegativeInteger", XSD + "positiveInteger", XSD + "nonPositiveInteger", XSD + "negativeInteger",
+            XSD + "unsignedLong", XSD + "unsignedInt", XSD + "unsignedShort", XSD + "unsignedByte"));
+
+    private static final Set<String> DATE_DATATYPES = new HashSet<>(Arrays.asList(
+            XSD + "dateTime", XSD + "dateTimeStamp", XSD + "date"));
+
+    private TypedLiteralValues() {
+        // NO-OP
+    }
+
+    /**
+     * Returns the IRIs of the XSD datatypes whose literals are indexed as numbers.
+     */
+    public static Set<String> getNumericDatatypes() {
+        return Collections.unmodifiableSet(NUMERIC_DATATYPES);
+    }
+
+    /**
+     * Returns the IRIs of the XSD datatypes whose literals are indexed as dates.
+     */
+    public static Set<String> getDateDatatypes() {
+        return Collections.unmodifiableSet(DATE_DATATYPES);
+    }
+
+    /**
+     * Returns the number of a literal with an XSD numeric datatype, or null if the
+     * datatype is not numeric or the lexical form is not a number.
+     */
+    public static Double getNumber(String datatypeIri, String lexicalForm) {
+        return NUMERIC_DATATYPES.contains(datatypeIri) ? parseNumber(lexicalForm) : null;
+    }
+
+    /**
+     * Returns the time of a literal with an XSD date datatype, or null if the datatype
+     * is not a date or the lexical form is not a date.
+     */
+    public static Long getDateTime(String datatypeIri, String lexicalForm) {
+        return DATE_DATATYPES.contains(datatypeIri) ? parseDateTime(lexicalForm) : null;
+    }
+
+    /**
+     * Parses a number, e.g., given as a query bound, or returns null if it is not one.
+     */
+    public static Double parseNumber(String text) {
+        try {
+            double number = Double.parseDouble(text.trim());
+            return Double.isNaN(number) ? null : number;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a date (<code>2024-01-01</code>) or a date-time
+     * (<code>2024-01-01T12:00:00</code>, optionally with an offset), e.g., given as a
+     * query bound, or returns null if it is not one.
+     */
+    public static Long parseDateTime(String text) {
+        String value = text.trim();
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        }
+        catch (DateTimeParseException e) {
+            // try without a time zone
+        }
+        try {
+            return LocalDateTime.parse(value).toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        catch (DateTimeParseException e) {
+            // try without a time
+        }
+        try {
+            return LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
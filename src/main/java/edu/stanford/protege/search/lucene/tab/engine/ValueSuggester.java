@@ -0,0 +1,119 @@
+package edu.stanford.protege.search.lucene.tab.engine;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Completes the value typed in a query from the annotation values in the index. Each
+ * short annotation value is indexed in {@link SearchTabIndexField#ANNOTATION_SUGGEST}
+ * once for every word it contains, as the term
+ * <code>property IRI, normalized text from that word on, original text</code>. A
+ * completion is then a seek into the (FST-indexed) terms dictionary followed by a
+ * short scan, and it finds values that start with the typed text as well as values
+ * with a word that does. Since the terms are written with the documents, the
+ * suggestions follow the incremental index updates.
+ */
+public final class ValueSuggester {
+
+    /**
+     * Values longer than this, such as definitions, are not suggested
+     */
+    public static final int MAX_SUGGESTION_LENGTH = 100;
+
+    /*
+     * Bounds the scan of a very common prefix, whose terms may mostly repeat a few values
+     */
+    private static final int MAX_SCANNED_TERMS = 1000;
+
+    private static final char SEPARATOR = '\u0000';
+
+    private ValueSuggester() {
+        // NO-OP
+    }
+
+    /**
+     * Returns the suggestion terms of the given annotation value, or none if the value is
+     * too long to be suggested.
+     */
+    public static List<String> getSuggestionTerms(String propertyIri, String text) {
+        String keyword = SearchTabIndexer.normalizeKeyword(text);
+        if (keyword.isEmpty() || keyword.length() > MAX_SUGGESTION_LENGTH || text.indexOf(SEPARATOR) >= 0) {
+            return Collections.emptyList();
+        }
+        List<String> terms = new ArrayList<>();
+        for (int start = 0; start >= 0; start = nextWordStart(keyword, start)) {
+            terms.add(propertyIri + SEPARATOR + keyword.substring(start) + SEPARATOR + text);
+        }
+        return terms;
+    }
+
+    /**
+     * Returns at most the given number of distinct values of the given property that
+     * start with the given text or have a word that does, ignoring case. The values that
+     * start with the text come first.
+     */
+    public static List<String> lookup(IndexReader reader, String propertyIri, String prefix, int limit)
+            throws IOException {
+        String normalizedPrefix = SearchTabIndexer.normalizeKeyword(prefix);
+        Terms terms = MultiFields.getTerms(reader, SearchTabIndexField.ANNOTATION_SUGGEST);
+        if (normalizedPrefix.isEmpty() || terms == null) {
+            return Collections.emptyList();
+        }
+        BytesRef termPrefix = new BytesRef(propertyIri + SEPARATOR + normalizedPrefix);
+        TermsEnum termsEnum = terms.iterator();
+        if (termsEnum.seekCeil(termPrefix) == TermsEnum.SeekStatus.END) {
+            return Collections.emptyList();
+        }
+        Bits liveDocs = MultiFields.getLiveDocs(reader);
+        Set<String> values = new LinkedHashSet<>();
+        PostingsEnum postings = null;
+        int scanned = 0;
+        for (BytesRef term = termsEnum.term(); term != null && StringHelper.startsWith(term, termPrefix);
+                term = termsEnum.next()) {
+            if (values.size() >= limit || scanned++ >= MAX_SCANNED_TERMS) {
+                break;
+            }
+            postings = termsEnum.postings(postings, PostingsEnum.NONE);
+            if (hasLiveDoc(postings, liveDocs)) {
+                String suggestion = term.utf8ToString();
+                values.add(suggestion.substring(suggestion.indexOf(SEPARATOR, propertyIri.length() + 1) + 1));
+            }
+        }
+        List<String> suggestions = new ArrayList<>(values);
+        suggestions.sort((v1, v2) -> Boolean.compare(
+                !SearchTabIndexer.normalizeKeyword(v1).startsWith(normalizedPrefix),
+                !SearchTabIndexer.normalizeKeyword(v2).startsWith(normalizedPrefix)));
+        return suggestions;
+    }
+
+    private static int nextWordStart(String keyword, int start) {
+        int space = keyword.indexOf(' ', start);
+        return (space < 0) ? -1 : space + 1;
+    }
+
+    /*
+     * Terms of deleted documents stay in the dictionary until their segment is merged
+     */
+    private static boolean hasLiveDoc(PostingsEnum postings, Bits liveDocs) throws IOException {
+        for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+            if (liveDocs == null || liveDocs.get(doc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -6,6 +6,7 @@ import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
 import org.semanticweb.owlapi.model.OWLProperty;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
 
 import javax.swing.*;
 import javax.swing.border.MatteBorder;
@@ -30,6 +31,7 @@ public class BasicQueryPanel extends QueryPanel {
     private JComponent value;
     private JLabel valueLbl;
     private OwlEntityComboBoxChangeHandler comboBoxChangeHandler;
+    private ValueSuggestionPopup valueSuggestionPopup;
 
     /**
      * Constructor
@@ -53,6 +55,7 @@ public class BasicQueryPanel extends QueryPanel {
         propertyComboBox = new OwlEntityComboBox(editorKit);
         propertyComboBox.addItemListener(itemListener);
         propertyComboBox.addItems(getProperties());
+        propertyComboBox.addFixedItem(getClassHierarchyEntry());
         comboBoxChangeHandler = new OwlEntityComboBoxChangeHandler(propertyComboBox);
 
         queryTypeComboBox = new JComboBox<>();
@@ -60,6 +63,7 @@ public class BasicQueryPanel extends QueryPanel {
         queryTypeComboBox.addActionListener(queryTypeComboBoxListener);
 
         valueTextField = new JTextField();
+        valueSuggestionPopup = new ValueSuggestionPopup(editorKit, valueTextField, this::getSuggestedProperty);
         valueComboBox = new JComboBox<>(new Boolean[]{true, false});
         value = valueTextField;
 
@@ -78,6 +82,16 @@ public class BasicQueryPanel extends QueryPanel {
         propertyComboBox.setSelectedItem(TabPreferences.getDefaultProperty(editorKit));
     }
 
+    /*
+     * The entry under which the queries on the asserted class hierarchy are offered. It
+     * is not a property of the ontology, so it is only offered in basic queries and not
+     * in nested queries or as the default property.
+     */
+    private OWLEntity getClassHierarchyEntry() {
+        return editorKit.getModelManager().getOWLDataFactory().getOWLAnnotationProperty(
+                OWLRDFVocabulary.RDFS_SUBCLASS_OF.getIRI());
+    }
+
     private OWLOntologyChangeListener ontologyEditingListener = changes -> {
         for (OWLOntologyChange change : changes) {
             change.accept(comboBoxChangeHandler);
@@ -136,6 +150,22 @@ public class BasicQueryPanel extends QueryPanel {
         return (OWLProperty) propertyComboBox.getSelectedItem();
     }
 
+    /*
+     * Suggests values only for the query types that take a (part of a) value as typed
+     */
+    private OWLProperty getSuggestedProperty() {
+        Object property = propertyComboBox.getSelectedItem();
+        QueryType queryType = getSelectedQueryType();
+        if (!(property instanceof OWLProperty) || queryType == null) {
+            return null;
+        }
+        if (queryType.equals(QueryType.CONTAINS) || queryType.equals(QueryType.STARTS_WITH)
+                || queryType.equals(QueryType.EXACT_MATCH) || queryType.equals(QueryType.FUZZY)) {
+            return (OWLProperty) property;
+        }
+        return null;
+    }
+
     public QueryType getSelectedQueryType() {
         return (QueryType) queryTypeComboBox.getSelectedItem();
     }
@@ -168,6 +198,7 @@ public class BasicQueryPanel extends QueryPanel {
     public void dispose() {
         propertyComboBox.removeItemListener(itemListener);
         queryTypeComboBox.removeActionListener(queryTypeComboBoxListener);
+        valueSuggestionPopup.dispose();
         editorKit.getModelManager().removeOntologyChangeListener(ontologyEditingListener);
         closeBtn.removeActionListener(closeBtnListener);
     }
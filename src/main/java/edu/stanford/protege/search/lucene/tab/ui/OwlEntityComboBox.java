@@ -32,6 +32,7 @@ public class OwlEntityComboBox extends JComboBox<OWLEntity> {
     private JTextField editorTextField;
     private ItemListener listener;
     private OWLEntity lastSelectedEntity;
+    private List<OWLEntity> fixedItems = new ArrayList<>();
 
     /**
      * Constructor
@@ -65,6 +66,15 @@ public class OwlEntityComboBox extends JComboBox<OWLEntity> {
         items.forEach(this::addItem);
     }
 
+    /**
+     * Adds an item that stays in the list whatever is typed, e.g., an entry that is not
+     * an entity of the ontology.
+     */
+    public void addFixedItem(OWLEntity item) {
+        fixedItems.add(item);
+        addItem(item);
+    }
+
     @Override
     public void addItem(OWLEntity item) {
         model.addElement(item);
@@ -121,6 +131,7 @@ public class OwlEntityComboBox extends JComboBox<OWLEntity> {
         List<OWLEntity> filteredItems = inputText.isEmpty()
                 ? LuceneUiUtils.getProperties(editorKit)
                 : findMatchingEntities(inputText);
+        filteredItems.addAll(fixedItems);
         removeItemListener(listener);
         model.removeAllElements();
         if (filteredItems.size() > 0) {
@@ -106,34 +106,42 @@ public class QueryEditorPanel extends JPanel implements Disposable {
         if (searchManager == null) {
             showInvalidSearchManagerErrorDialog(); return;
         }
-        BasicQuery.Factory queryFactory = new BasicQuery.Factory(new SearchContext(editorKit), searchManager);
+        BasicQuery.Factory queryFactory = new BasicQuery.Factory(new SearchContext(editorKit), searchManager,
+                searchManager.getIndexedFieldOptions());
+        queryFactory.setFuzzyParameters(TabPreferences.getFuzzyMaxEdits(), TabPreferences.getFuzzyPrefixLength());
         boolean emptyQueries = false;
 
         // build a lucene query object from all the query clauses
         FilteredQuery.Builder builder = new FilteredQuery.Builder();
-        for(QueryPanel queryPanel : queries) {
-            if(queryPanel.isBasicQuery()) {
-                BasicQuery basicQuery = getBasicQuery((BasicQueryPanel) queryPanel, queryFactory);
-                if(basicQuery != null) {
-                    builder.add(basicQuery);
-                } else {
-                    emptyQueries = true;
-                }
-            } else if(queryPanel.isNegatedQuery()) {
-                NegatedQuery negatedQuery = getNegatedQuery((NegatedQueryPanel) queryPanel, queryFactory, searchManager);
-                if(negatedQuery != null && !negatedQuery.getFilters().isEmpty()) {
-                    builder.add(negatedQuery);
-                } else {
-                    emptyQueries = true;
-                }
-            } else if(queryPanel.isNestedQuery()) {
-                NestedQuery nestedQuery = getNestedQuery((NestedQueryPanel) queryPanel, queryFactory, searchManager);
-                if(nestedQuery != null && !nestedQuery.getFillerFilters().isEmpty()) {
-                    builder.add(nestedQuery);
-                } else {
-                    emptyQueries = true;
+        try {
+            for(QueryPanel queryPanel : queries) {
+                if(queryPanel.isBasicQuery()) {
+                    BasicQuery basicQuery = getBasicQuery((BasicQueryPanel) queryPanel, queryFactory);
+                    if(basicQuery != null) {
+                        builder.add(basicQuery);
+                    } else {
+                        emptyQueries = true;
+                    }
+                } else if(queryPanel.isNegatedQuery()) {
+                    NegatedQuery negatedQuery = getNegatedQuery((NegatedQueryPanel) queryPanel, queryFactory, searchManager);
+                    if(negatedQuery != null && !negatedQuery.getFilters().isEmpty()) {
+                        builder.add(negatedQuery);
+                    } else {
+                        emptyQueries = true;
+                    }
+                } else if(queryPanel.isNestedQuery()) {
+                    NestedQuery nestedQuery = getNestedQuery((NestedQueryPanel) queryPanel, queryFactory, searchManager);
+                    if(nestedQuery != null && !nestedQuery.getFillerFilters().isEmpty()) {
+                        builder.add(nestedQuery);
+                    } else {
+                        emptyQueries = true;
+                    }
                 }
             }
+        } catch(IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(editorKit.getOWLWorkspace(), new JLabel(ex.getMessage()),
+                    "Invalid query value", JOptionPane.INFORMATION_MESSAGE);
+            return;
         }
         MatchCriteria match = getMatchCriteria();
         boolean isMatchAll = (match == MatchCriteria.MATCH_ALL);
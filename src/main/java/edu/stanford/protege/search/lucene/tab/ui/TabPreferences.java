@@ -22,8 +22,12 @@ public class TabPreferences {
     private static final String OWL_PROPERTY = "defaultProperty";
     private static final String RESULTS_PER_PAGE = "defaultResultsPerPage";
     private static final String QUERY_TYPE = "defaultQueryType";
+    private static final String FUZZY_MAX_EDITS = "fuzzyMaxEdits";
+    private static final String FUZZY_PREFIX_LENGTH = "fuzzyPrefixLength";
 
     private static final int defaultResultsPerPage = 50;
+    private static final int defaultFuzzyMaxEdits = 2;
+    private static final int defaultFuzzyPrefixLength = 1;
     private static final QueryType defaultQueryType = QueryType.CONTAINS;
     private static final OWLProperty defaultProperty = OWLManager.getOWLDataFactory().getRDFSLabel();
 
@@ -40,6 +44,14 @@ public class TabPreferences {
         return getPreferences().getInt(RESULTS_PER_PAGE, defaultResultsPerPage);
     }
 
+    public static int getFuzzyMaxEdits() {
+        return getPreferences().getInt(FUZZY_MAX_EDITS, defaultFuzzyMaxEdits);
+    }
+
+    public static int getFuzzyPrefixLength() {
+        return getPreferences().getInt(FUZZY_PREFIX_LENGTH, defaultFuzzyPrefixLength);
+    }
+
     public static OWLProperty getDefaultProperty(OWLEditorKit editorKit) {
         String propIri = getPreferences().getString(OWL_PROPERTY, defaultProperty.getIRI().toString());
         Optional<OWLProperty> propOpt = LuceneUiUtils.getPropertyForIri(editorKit, IRI.create(propIri));
@@ -53,6 +65,14 @@ public class TabPreferences {
         getPreferences().putInt(RESULTS_PER_PAGE, checkNotNull(nrResultsPerPage));
     }
 
+    public static void setFuzzyMaxEdits(int maxEdits) {
+        getPreferences().putInt(FUZZY_MAX_EDITS, Math.max(0, Math.min(2, maxEdits)));
+    }
+
+    public static void setFuzzyPrefixLength(int prefixLength) {
+        getPreferences().putInt(FUZZY_PREFIX_LENGTH, Math.max(0, prefixLength));
+    }
+
     public static void setDefaultProperty(IRI defaultPropertyIri) {
         checkNotNull(defaultPropertyIri);
         getPreferences().putString(OWL_PROPERTY, defaultPropertyIri.toString());
@@ -4,9 +4,15 @@ import org.protege.editor.core.ui.util.InputVerificationStatusChangedListener;
 import org.protege.editor.core.ui.util.JOptionPaneEx;
 import org.protege.editor.core.ui.util.VerifiedInputEditor;
 import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.ui.renderer.OWLCellRenderer;
 import org.protege.editor.search.lucene.LuceneSearchPreferences;
+import edu.stanford.protege.search.lucene.tab.engine.IndexFieldOptions;
 import edu.stanford.protege.search.lucene.tab.engine.QueryType;
+import edu.stanford.protege.search.lucene.tab.engine.SearchTabIndexPreferences;
+import edu.stanford.protege.search.lucene.tab.engine.SearchTabManager;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
 import org.semanticweb.owlapi.model.OWLProperty;
+import org.semanticweb.owlapi.model.parameters.Imports;
 
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
@@ -14,7 +20,9 @@ import javax.swing.event.DocumentListener;
 import javax.swing.text.NumberFormatter;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -26,11 +34,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class TabPreferencesDialogPanel extends JPanel implements VerifiedInputEditor {
     private static final long serialVersionUID = -5267362633380833037L;
     private List<InputVerificationStatusChangedListener> listeners = new ArrayList<>();
-    private JLabel propertyLbl, queryTypeLbl, maxResultsLbl;
+    private JLabel propertyLbl, queryTypeLbl, maxResultsLbl, commitChangeCountLbl, commitIntervalLbl,
+            diskBudgetLbl, diskUsageLbl, nGramPropertiesLbl, nGramUsageLbl,
+            propertyFieldPropertiesLbl, fuzzyMaxEditsLbl, fuzzyPrefixLengthLbl;
     private OwlEntityComboBox propertyComboBox;
     private JComboBox<QueryType> queryTypes;
     private JFormattedTextField maxResultsField;
-    private JSpinner maxResults;
+    private JSpinner maxResults, commitChangeCount, commitInterval, diskBudget, fuzzyMaxEdits, fuzzyPrefixLength;
+    private JCheckBox commitOnSave;
+    private JList<OWLAnnotationProperty> nGramProperties, propertyFieldProperties;
     private OWLEditorKit editorKit;
     private boolean currentlyValid;
 
@@ -50,6 +62,15 @@ public class TabPreferencesDialogPanel extends JPanel implements VerifiedInputEd
         propertyLbl = new JLabel("Default OWL property");
         queryTypeLbl = new JLabel("Default query type");
         maxResultsLbl = new JLabel("Maximum results per page");
+        fuzzyMaxEditsLbl = new JLabel("Maximum typos per word in similarity queries");
+        fuzzyPrefixLengthLbl = new JLabel("Leading characters that must match in similarity queries");
+        commitChangeCountLbl = new JLabel("Save index to disk after this many changes");
+        commitIntervalLbl = new JLabel("Save index to disk at least every (seconds)");
+        diskBudgetLbl = new JLabel("Maximum disk space for indexes in MB (0 for no limit)");
+        diskUsageLbl = new JLabel(" ");
+        nGramPropertiesLbl = new JLabel("Index substrings of these annotation properties (larger index)");
+        nGramUsageLbl = new JLabel(" ");
+        propertyFieldPropertiesLbl = new JLabel("Index these annotation properties separately (faster value queries)");
 
         propertyComboBox = new OwlEntityComboBox(editorKit);
         propertyComboBox.addItems(LuceneUiUtils.getProperties(editorKit));
@@ -65,6 +86,16 @@ public class TabPreferencesDialogPanel extends JPanel implements VerifiedInputEd
         maxResultsField.getDocument().addDocumentListener(maxResultsFieldListener);
         ((NumberFormatter) maxResultsField.getFormatter()).setAllowsInvalid(false);
 
+        fuzzyMaxEdits = new JSpinner(new SpinnerNumberModel(0, 0, 2, 1));
+        fuzzyPrefixLength = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1));
+        commitChangeCount = new JSpinner(new SpinnerNumberModel(1, 1, Integer.MAX_VALUE, 100));
+        commitInterval = new JSpinner(new SpinnerNumberModel(1, 1, Integer.MAX_VALUE, 10));
+        commitOnSave = new JCheckBox("Save index to disk when the ontology is saved");
+        diskBudget = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 256));
+
+        nGramProperties = createAnnotationPropertyList();
+        propertyFieldProperties = createAnnotationPropertyList();
+
         Insets first = new Insets(5, 0, 2, 0);
         Insets second = new Insets(2, 0, 10, 0);
 
@@ -77,9 +108,74 @@ public class TabPreferencesDialogPanel extends JPanel implements VerifiedInputEd
         add(queryTypeLbl, new GridBagConstraints(0, 4, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
         add(queryTypes, new GridBagConstraints(0, 5, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, second, 0, 0));
 
+        add(commitChangeCountLbl, new GridBagConstraints(0, 6, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
+        add(commitChangeCount, new GridBagConstraints(0, 7, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, second, 0, 0));
+
+        add(commitIntervalLbl, new GridBagConstraints(0, 8, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
+        add(commitInterval, new GridBagConstraints(0, 9, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, second, 0, 0));
+
+        add(commitOnSave, new GridBagConstraints(0, 10, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, second, 0, 0));
+
+        add(diskBudgetLbl, new GridBagConstraints(0, 11, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
+        add(diskBudget, new GridBagConstraints(0, 12, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, first, 0, 0));
+        add(diskUsageLbl, new GridBagConstraints(0, 13, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, second, 0, 0));
+
+        add(nGramPropertiesLbl, new GridBagConstraints(0, 14, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
+        add(new JScrollPane(nGramProperties), new GridBagConstraints(0, 15, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, first, 0, 0));
+        add(nGramUsageLbl, new GridBagConstraints(0, 16, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, second, 0, 0));
+
+        add(propertyFieldPropertiesLbl, new GridBagConstraints(0, 17, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
+        add(new JScrollPane(propertyFieldProperties), new GridBagConstraints(0, 18, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, second, 0, 0));
+
+        add(fuzzyMaxEditsLbl, new GridBagConstraints(0, 19, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
+        add(fuzzyMaxEdits, new GridBagConstraints(0, 20, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, second, 0, 0));
+
+        add(fuzzyPrefixLengthLbl, new GridBagConstraints(0, 21, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.NONE, first, 0, 0));
+        add(fuzzyPrefixLength, new GridBagConstraints(0, 22, 1, 1, 1.0, 0.0, GridBagConstraints.BASELINE_LEADING, GridBagConstraints.HORIZONTAL, second, 0, 0));
+
         setDefaultValues();
     }
 
+    private JList<OWLAnnotationProperty> createAnnotationPropertyList() {
+        DefaultListModel<OWLAnnotationProperty> model = new DefaultListModel<>();
+        editorKit.getModelManager().getActiveOntology().getAnnotationPropertiesInSignature(Imports.INCLUDED).stream()
+                .sorted().forEach(model::addElement);
+        JList<OWLAnnotationProperty> list = new JList<>(model);
+        list.setCellRenderer(new OWLCellRenderer(editorKit));
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        list.setVisibleRowCount(5);
+        return list;
+    }
+
+    private static void setSelectedProperties(JList<OWLAnnotationProperty> list, Set<String> propertyIris) {
+        ListModel<OWLAnnotationProperty> model = list.getModel();
+        for (int i = 0; i < model.getSize(); i++) {
+            if (propertyIris.contains(model.getElementAt(i).getIRI().toString())) {
+                list.addSelectionInterval(i, i);
+            }
+        }
+    }
+
+    /*
+     * Returns the stored property IRIs with the selection of the listed properties
+     * applied. The preferences apply to all projects, so the IRIs of properties that
+     * this project does not list are kept as they are.
+     */
+    private static Set<String> getSelectedProperties(JList<OWLAnnotationProperty> list, Set<String> storedIris) {
+        Set<String> propertyIris = new HashSet<>(storedIris);
+        ListModel<OWLAnnotationProperty> model = list.getModel();
+        for (int i = 0; i < model.getSize(); i++) {
+            String iri = model.getElementAt(i).getIRI().toString();
+            if (list.isSelectedIndex(i)) {
+                propertyIris.add(iri);
+            }
+            else {
+                propertyIris.remove(iri);
+            }
+        }
+        return propertyIris;
+    }
+
     private DocumentListener maxResultsFieldListener = new DocumentListener() {
         @Override
         public void insertUpdate(DocumentEvent e) {
@@ -102,6 +198,44 @@ public class TabPreferencesDialogPanel extends JPanel implements VerifiedInputEd
         OWLProperty defaultProperty = TabPreferences.getDefaultProperty(editorKit);
         propertyComboBox.setSelectedItem(defaultProperty);
         queryTypes.setSelectedItem(TabPreferences.getDefaultQueryType());
+        fuzzyMaxEdits.setValue(TabPreferences.getFuzzyMaxEdits());
+        fuzzyPrefixLength.setValue(TabPreferences.getFuzzyPrefixLength());
+        commitChangeCount.setValue(SearchTabIndexPreferences.getCommitChangeCount());
+        commitInterval.setValue(SearchTabIndexPreferences.getCommitInterval());
+        commitOnSave.setSelected(SearchTabIndexPreferences.isCommitOnSave());
+        diskBudget.setValue(SearchTabIndexPreferences.getDiskBudget());
+        setSelectedProperties(nGramProperties, SearchTabIndexPreferences.getNGramProperties());
+        setSelectedProperties(propertyFieldProperties, SearchTabIndexPreferences.getPropertyFieldProperties());
+        showIndexSizes();
+    }
+
+    private void showIndexSizes() {
+        SearchTabManager searchManager = getSearchManager();
+        if (searchManager == null) {
+            return;
+        }
+        new SwingWorker<long[], Void>() {
+            @Override
+            protected long[] doInBackground() {
+                return new long[] { searchManager.getIndexCacheSize(), searchManager.getNGramFieldSize() };
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    long[] sizes = get();
+                    if (sizes[0] >= 0) {
+                        diskUsageLbl.setText(String.format("Indexes currently use %d MB", sizes[0] / (1024 * 1024)));
+                    }
+                    if (sizes[1] >= 0) {
+                        nGramUsageLbl.setText(String.format("Substring index currently uses about %d MB", sizes[1] / (1024 * 1024)));
+                    }
+                }
+                catch (Exception e) {
+                    // leave the disk usage blank
+                }
+            }
+        }.execute();
     }
 
     private void updatePreferences() {
@@ -112,6 +246,33 @@ public class TabPreferencesDialogPanel extends JPanel implements VerifiedInputEd
         TabPreferences.setDefaultQueryType(qt);
 
         TabPreferences.setMaximumResultsPerPage(((SpinnerNumberModel) maxResults.getModel()).getNumber().intValue());
+        TabPreferences.setFuzzyMaxEdits(((SpinnerNumberModel) fuzzyMaxEdits.getModel()).getNumber().intValue());
+        TabPreferences.setFuzzyPrefixLength(((SpinnerNumberModel) fuzzyPrefixLength.getModel()).getNumber().intValue());
+
+        SearchTabIndexPreferences.setCommitChangeCount(((SpinnerNumberModel) commitChangeCount.getModel()).getNumber().intValue());
+        SearchTabIndexPreferences.setCommitInterval(((SpinnerNumberModel) commitInterval.getModel()).getNumber().intValue());
+        SearchTabIndexPreferences.setCommitOnSave(commitOnSave.isSelected());
+        SearchTabIndexPreferences.setDiskBudget(((SpinnerNumberModel) diskBudget.getModel()).getNumber().intValue());
+
+        IndexFieldOptions storedOptions = IndexFieldOptions.fromPreferences();
+        IndexFieldOptions fieldOptions = new IndexFieldOptions(
+                getSelectedProperties(nGramProperties, storedOptions.getNGramProperties()),
+                getSelectedProperties(propertyFieldProperties, storedOptions.getPropertyFieldProperties()));
+        if (!fieldOptions.equals(storedOptions)) { // only if a selection changed
+            SearchTabIndexPreferences.setNGramProperties(fieldOptions.getNGramProperties());
+            SearchTabIndexPreferences.setPropertyFieldProperties(fieldOptions.getPropertyFieldProperties());
+            SearchTabManager searchManager = getSearchManager();
+            if (searchManager != null) {
+                searchManager.rebuildIndex(); // the optional fields are written at indexing time
+            }
+        }
+    }
+
+    private SearchTabManager getSearchManager() {
+        if (editorKit.getSearchManager() instanceof SearchTabManager) {
+            return (SearchTabManager) editorKit.getSearchManager();
+        }
+        return null;
     }
 
     public static void showDialog(OWLEditorKit editorKit) {
@@ -0,0 +1,159 @@
+package edu.stanford.protege.search.lucene.tab.ui;
+
+import edu.stanford.protege.search.lucene.tab.engine.SearchTabManager;
+import org.protege.editor.core.Disposable;
+import org.protege.editor.owl.OWLEditorKit;
+import org.semanticweb.owlapi.model.OWLProperty;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Shows completions of the text typed in a query value field, looked up in the index
+ * off the event dispatch thread shortly after the user stops typing.
+ */
+public class ValueSuggestionPopup implements Disposable {
+    private static final int SUGGESTION_DELAY = 150; // in milliseconds
+    private static final int MAX_SUGGESTIONS = 10;
+    private OWLEditorKit editorKit;
+    private JTextField textField;
+    private Supplier<OWLProperty> propertySupplier;
+    private JPopupMenu popup = new JPopupMenu();
+    private Timer timer;
+    private SwingWorker<List<String>, Void> worker;
+    private boolean completing = false;
+
+    /**
+     * Constructor
+     *
+     * @param editorKit        OWL Editor Kit
+     * @param textField        Query value field
+     * @param propertySupplier Supplies the property whose values are suggested, or null
+     *                         if no suggestions should be shown
+     */
+    public ValueSuggestionPopup(OWLEditorKit editorKit, JTextField textField, Supplier<OWLProperty> propertySupplier) {
+        this.editorKit = checkNotNull(editorKit);
+        this.textField = checkNotNull(textField);
+        this.propertySupplier = checkNotNull(propertySupplier);
+        popup.setFocusable(false);
+        timer = new Timer(SUGGESTION_DELAY, e -> updateSuggestions());
+        timer.setRepeats(false);
+        textField.getDocument().addDocumentListener(documentListener);
+        textField.addFocusListener(focusListener);
+    }
+
+    private DocumentListener documentListener = new DocumentListener() {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            textChanged();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            textChanged();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            textChanged();
+        }
+    };
+
+    private FocusListener focusListener = new FocusAdapter() {
+        @Override
+        public void focusLost(FocusEvent e) {
+            timer.stop();
+            popup.setVisible(false);
+        }
+    };
+
+    private void textChanged() {
+        if (!completing) {
+            timer.restart();
+        }
+    }
+
+    private void updateSuggestions() {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        String prefix = textField.getText();
+        OWLProperty property = propertySupplier.get();
+        SearchTabManager searchManager = getSearchManager();
+        if (prefix.trim().isEmpty() || property == null || searchManager == null) {
+            popup.setVisible(false);
+            return;
+        }
+        worker = new SwingWorker<List<String>, Void>() {
+            @Override
+            protected List<String> doInBackground() throws Exception {
+                return searchManager.getSuggestions(property, prefix, MAX_SUGGESTIONS).get();
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    showSuggestions(get());
+                }
+                catch (Exception e) {
+                    popup.setVisible(false);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void showSuggestions(List<String> suggestions) {
+        popup.setVisible(false);
+        popup.removeAll();
+        if (suggestions.isEmpty() || !textField.isFocusOwner()) {
+            return;
+        }
+        for (String suggestion : suggestions) {
+            JMenuItem item = new JMenuItem(suggestion);
+            item.addActionListener(e -> complete(suggestion));
+            popup.add(item);
+        }
+        popup.show(textField, 0, textField.getHeight());
+    }
+
+    private void complete(String suggestion) {
+        completing = true;
+        try {
+            textField.setText(suggestion);
+        }
+        finally {
+            completing = false;
+        }
+        popup.setVisible(false);
+    }
+
+    private SearchTabManager getSearchManager() {
+        SearchTabManager searchManager = null;
+        if (editorKit.getSearchManager() instanceof SearchTabManager) {
+            searchManager = (SearchTabManager) editorKit.getSearchManager();
+        }
+        return searchManager;
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        textField.getDocument().removeDocumentListener(documentListener);
+        textField.removeFocusListener(focusListener);
+    }
+}
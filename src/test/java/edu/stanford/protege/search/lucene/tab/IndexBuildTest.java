@@ -0,0 +1,260 @@
+package edu.stanford.protege.search.lucene.tab;
+
+import edu.stanford.protege.search.lucene.tab.engine.*;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.model.OWLModelManagerImpl;
+import org.protege.editor.owl.model.find.OWLEntityFinder;
+import org.protege.editor.search.lucene.SearchContext;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Covers the building blocks of a rebuild: the shadow generation that is swapped in
+ * by publishing it, the replay of the changes made while it was built, and resuming
+ * an interrupted build from its checkpoint.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class IndexBuildTest {
+
+    @Rule
+    public TemporaryFolder indexFolder = new TemporaryFolder();
+
+    private OWLOntology koalaOntology;
+
+    private OWLDataFactory df;
+
+    private SearchTabIndexer indexer;
+
+    @Mock
+    private OWLModelManagerImpl mngr;
+
+    @Mock
+    private OWLEntityFinder entityFinder;
+
+    @Mock
+    private OWLEditorKit editorKit;
+
+    @Mock
+    private SearchContext searchContext;
+
+    @Before
+    public void setUp() throws Exception {
+        OWLOntologyManager ontologyMngr = OWLManager.createOWLOntologyManager();
+        when(mngr.getOWLOntologyManager()).thenReturn(ontologyMngr);
+        when(mngr.getRendering(any(OWLObject.class))).thenAnswer(invocation -> {
+            OWLObject arg = (OWLObject) invocation.getArguments()[0];
+            if (arg instanceof OWLEntity) {
+                String iriString = ((OWLEntity) arg).getIRI().toString();
+                return iriString.substring(iriString.lastIndexOf('#'));
+            }
+            else {
+                return arg.toString();
+            }
+        });
+
+        koalaOntology = KoalaOntology.load(ontologyMngr);
+        df = ontologyMngr.getOWLDataFactory();
+        when(entityFinder.getEntities(any(IRI.class))).thenAnswer(invocation -> {
+            IRI arg = (IRI) invocation.getArguments()[0];
+            return koalaOntology.getEntitiesInSignature(arg);
+        });
+
+        when(editorKit.getOWLModelManager()).thenReturn(mngr);
+        when(editorKit.getOWLModelManager().getOWLEntityFinder()).thenReturn(entityFinder);
+        indexer = new SearchTabIndexer(editorKit);
+
+        Set<OWLOntology> activeOntologies = new HashSet<>();
+        activeOntologies.add(koalaOntology);
+        when(searchContext.getOntologies()).thenReturn(activeOntologies);
+    }
+
+    @Test
+    public void testSwapShadowGeneration() throws IOException {
+        IndexDirectoryLayout layout = new IndexDirectoryLayout(indexFolder.getRoot().toPath().resolve("koala"));
+        Path current = layout.newGeneration();
+        buildIndex(current);
+        layout.publish(current);
+
+        OWLAxiom label = getWallabyLabel();
+        koalaOntology.getOWLOntologyManager().addAxiom(koalaOntology, label);
+        Path shadow = layout.newGeneration();
+        buildIndex(shadow);
+        assertThat(layout.getCurrentLocation(), is(current)); // not visible until published
+
+        layout.publish(shadow);
+        layout.reclaim();
+        assertThat(layout.getCurrentLocation(), is(shadow));
+        assertThat(Files.exists(current), is(false));
+        SearchTabIndexDelegator delegator = SearchTabIndexDelegator.getInstance(FSDirectory.open(shadow),
+                indexer.getIndexWriterConfig());
+        try {
+            assertThat(countDocuments(delegator, ContentKey.of(koalaOntology.getOntologyID(), label)), greaterThan(0));
+        }
+        finally {
+            delegator.dispose();
+        }
+    }
+
+    @Test
+    public void testDiscardShadowGeneration() throws IOException {
+        IndexDirectoryLayout layout = new IndexDirectoryLayout(indexFolder.getRoot().toPath().resolve("koala"));
+        Path current = layout.newGeneration();
+        buildIndex(current);
+        layout.publish(current);
+
+        Path shadow = layout.newGeneration();
+        layout.discard(shadow);
+        assertThat(Files.exists(shadow), is(false));
+        layout.discard(current); // the current generation is never discarded
+        assertThat(layout.getCurrentLocation(), is(current));
+        assertThat(Files.exists(current), is(true));
+    }
+
+    @Test
+    public void testReplayChangesMissedDuringRebuild() throws IOException {
+        SearchTabIndexDelegator shadowDelegator = SearchTabIndexDelegator.getInstance(new RAMDirectory(),
+                indexer.getIndexWriterConfig());
+        try {
+            // the rebuild already sees the first change, the second comes after it
+            OWLAxiom label = getWallabyLabel();
+            OWLAxiom subClassOf = df.getOWLSubClassOfAxiom(KoalaOntology.quokka, KoalaOntology.marsupials);
+            AddAxiom seenChange = new AddAxiom(koalaOntology, label);
+            koalaOntology.getOWLOntologyManager().applyChange(seenChange);
+            indexer.doIndex(shadowDelegator, searchContext, null);
+            OntologyFingerprint fingerprint = OntologyFingerprint.parse(
+                    OntologyFingerprint.fromCommitData(shadowDelegator.getCommitData()));
+            String labelKey = ContentKey.of(koalaOntology.getOntologyID(), label);
+            int labelCount = countDocuments(shadowDelegator, labelKey);
+            assertThat(labelCount, greaterThan(0));
+
+            RemoveAxiom missedChange = new RemoveAxiom(koalaOntology, subClassOf);
+            koalaOntology.getOWLOntologyManager().applyChange(missedChange);
+            String subClassOfKey = ContentKey.of(koalaOntology.getOntologyID(), subClassOf);
+            assertThat(countDocuments(shadowDelegator, subClassOfKey), greaterThan(0));
+
+            replay(shadowDelegator, Arrays.asList(seenChange, missedChange));
+            fingerprint.apply(Collections.singletonList(missedChange));
+            assertThat(countDocuments(shadowDelegator, labelKey), is(labelCount));
+            assertThat(countDocuments(shadowDelegator, subClassOfKey), is(0));
+            assertThat(fingerprint.getValue(), is(OntologyFingerprint.of(searchContext.getOntologies()).getValue()));
+        }
+        finally {
+            shadowDelegator.dispose();
+        }
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws IOException {
+        SearchTabIndexDelegator delegator = SearchTabIndexDelegator.getInstance(new RAMDirectory(),
+                indexer.getIndexWriterConfig());
+        try {
+            // an interrupted build that got through all the entities of the ontology
+            String guard = OntologyFingerprint.of(searchContext.getOntologies()).getValue();
+            delegator.checkpoint(indexer.getFieldOptions().withCommitData(
+                    IndexBuildCheckpoint.inProgress(guard, 0, koalaOntology.getSignature().size()).toCommitData()));
+            indexer.doIndex(delegator, searchContext, null);
+
+            OWLOntologyID ontologyId = koalaOntology.getOntologyID();
+            OWLAxiom subClassOf = df.getOWLSubClassOfAxiom(KoalaOntology.quokka, KoalaOntology.marsupials);
+            assertThat(countDocuments(delegator, ContentKey.of(ontologyId, KoalaOntology.quokka)), is(0));
+            assertThat(countDocuments(delegator, ContentKey.of(ontologyId, subClassOf)), greaterThan(0));
+            assertThat(IndexBuildCheckpoint.fromCommitData(delegator.getCommitData()).isComplete(), is(true));
+        }
+        finally {
+            delegator.dispose();
+        }
+    }
+
+    @Test
+    public void testRestartOnStaleCheckpoint() throws IOException {
+        SearchTabIndexDelegator delegator = SearchTabIndexDelegator.getInstance(new RAMDirectory(),
+                indexer.getIndexWriterConfig());
+        try {
+            // a checkpoint of a build over ontologies that have changed since
+            Document staleDocument = new Document();
+            staleDocument.add(new StringField(SearchTabIndexField.CONTENT_KEY, "stale", Field.Store.YES));
+            delegator.getIndexWriter().addDocument(staleDocument);
+            delegator.checkpoint(indexer.getFieldOptions().withCommitData(
+                    IndexBuildCheckpoint.inProgress("stale", 0, koalaOntology.getSignature().size()).toCommitData()));
+            indexer.doIndex(delegator, searchContext, null);
+
+            OWLOntologyID ontologyId = koalaOntology.getOntologyID();
+            assertThat(countDocuments(delegator, "stale"), is(0));
+            assertThat(countDocuments(delegator, ContentKey.of(ontologyId, KoalaOntology.quokka)), greaterThan(0));
+            assertThat(IndexBuildCheckpoint.fromCommitData(delegator.getCommitData()).isComplete(), is(true));
+        }
+        finally {
+            delegator.dispose();
+        }
+    }
+
+    private OWLAxiom getWallabyLabel() {
+        return df.getOWLAnnotationAssertionAxiom(KoalaOntology.rdfsLabel, KoalaOntology.quokkaIri,
+                df.getOWLLiteral("Short-tailed Scrub Wallaby"));
+    }
+
+    private void buildIndex(Path location) throws IOException {
+        SearchTabIndexDelegator delegator = SearchTabIndexDelegator.getInstance(FSDirectory.open(location),
+                indexer.getIndexWriterConfig());
+        try {
+            indexer.doIndex(delegator, searchContext, null);
+        }
+        finally {
+            delegator.dispose();
+        }
+    }
+
+    /*
+     * Applies the changes to the index like an incremental update does.
+     */
+    private void replay(SearchTabIndexDelegator delegator, List<? extends OWLOntologyChange> changes)
+            throws IOException {
+        SearchTabRemoveChangeSetHandler removeHandler = new SearchTabRemoveChangeSetHandler(editorKit);
+        SearchTabAddChangeSetHandler addHandler = new SearchTabAddChangeSetHandler(editorKit, indexer.getFieldOptions());
+        for (OWLOntologyChange change : changes) {
+            if (change instanceof RemoveAxiom) {
+                removeHandler.visit((RemoveAxiom) change);
+            }
+            else if (change instanceof AddAxiom) {
+                addHandler.visit((AddAxiom) change);
+            }
+        }
+        indexer.doUpdate(delegator, removeHandler.getPendingRemovals(), addHandler.getPendingDocuments());
+        delegator.refresh();
+    }
+
+    private static int countDocuments(SearchTabIndexDelegator delegator, String contentKey) throws IOException {
+        try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+            return snapshot.getSearcher().count(new TermQuery(new Term(SearchTabIndexField.CONTENT_KEY, contentKey)));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package edu.stanford.protege.search.lucene.tab;
+
+import edu.stanford.protege.search.lucene.tab.engine.IndexDiskCache;
+import edu.stanford.protege.search.lucene.tab.engine.SharedIndexStore;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.Lock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IndexDiskCacheTest {
+
+    private static final int ENTRY_SIZE = 1000;
+
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private Path cacheLocation;
+
+    private IndexDiskCache cache;
+
+    @Before
+    public void setUp() {
+        cacheLocation = cacheFolder.getRoot().toPath();
+        cache = new IndexDiskCache(cacheLocation);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyOpenedFirst() throws IOException {
+        Path first = createEntry(cacheLocation.resolve("first"), 1000);
+        Path second = createEntry(cacheLocation.resolve("second"), 2000);
+        Path third = createEntry(cacheLocation.resolve("third"), 3000);
+        assertThat(cache.getSize(), is(3L * ENTRY_SIZE));
+
+        assertThat(cache.evict(2 * ENTRY_SIZE, null), is((long) ENTRY_SIZE));
+        assertThat(Files.exists(first), is(false));
+        assertThat(Files.exists(second), is(true));
+        assertThat(Files.exists(third), is(true));
+        assertThat(cache.getSize(), is(2L * ENTRY_SIZE));
+    }
+
+    @Test
+    public void testSkipLockedAndInUseEntries() throws IOException {
+        Path locked = createEntry(cacheLocation.resolve("locked"), 1000);
+        Path inUse = createEntry(cacheLocation.resolve("inUse"), 2000);
+        Path older = createEntry(cacheLocation.resolve("older"), 3000);
+        Path newer = createEntry(cacheLocation.resolve("newer"), 4000);
+        try (Directory directory = FSDirectory.open(locked);
+             Lock lock = directory.obtainLock(IndexWriter.WRITE_LOCK_NAME)) {
+            assertThat(cache.evict(ENTRY_SIZE, inUse), is(2L * ENTRY_SIZE));
+        }
+        assertThat(Files.exists(locked), is(true));
+        assertThat(Files.exists(inUse), is(true));
+        assertThat(Files.exists(older), is(false));
+        assertThat(Files.exists(newer), is(false));
+    }
+
+    @Test
+    public void testEvictSharedEntriesWithoutTrace() throws IOException {
+        Path storeLocation = cache.getSharedIndexStoreLocation();
+        Path shared = createEntry(storeLocation.resolve("shared-entry"), 1000);
+        createEntry(cacheLocation.resolve("record"), 2000);
+        Path trash = createEntry(cacheLocation.resolve("trash-left-over"), 3000);
+
+        assertThat(cache.evict(ENTRY_SIZE, null), is((long) ENTRY_SIZE));
+        assertThat(Files.exists(shared), is(false));
+        assertThat(Files.exists(trash), is(false));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(storeLocation)) {
+            assertThat(stream.iterator().hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void testIgnoreIncompleteSharedEntry() throws IOException {
+        SharedIndexStore store = new SharedIndexStore(cache.getSharedIndexStoreLocation());
+        createEntry(store.getStoreLocation().resolve("half-deleted"), 1000);
+        assertThat(store.find("half-deleted"), is(nullValue()));
+    }
+
+    private static Path createEntry(Path entry, long lastOpened) throws IOException {
+        Files.createDirectories(entry);
+        Files.write(entry.resolve("segments_1"), new byte[ENTRY_SIZE]);
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(lastOpened));
+        return entry;
+    }
+}
@@ -0,0 +1,92 @@
+package edu.stanford.protege.search.lucene.tab;
+
+import edu.stanford.protege.search.lucene.tab.engine.IndexUpdateQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class IndexUpdateQueueTest {
+
+    private static final long NEVER = TimeUnit.HOURS.toMillis(1);
+
+    private OWLOntology ontology;
+
+    private OWLAxiom koalaDeclaration;
+
+    private OWLAxiom quokkaDeclaration;
+
+    private IndexUpdateQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        ontology = OWLManager.createOWLOntologyManager().createOntology(IRI.create(KoalaOntology.ONTOLOGY_ID));
+        OWLDataFactory df = ontology.getOWLOntologyManager().getOWLDataFactory();
+        koalaDeclaration = df.getOWLDeclarationAxiom(KoalaOntology.koala);
+        quokkaDeclaration = df.getOWLDeclarationAxiom(KoalaOntology.quokka);
+        queue = new IndexUpdateQueue(() -> {}, NEVER, NEVER);
+    }
+
+    @After
+    public void tearDown() {
+        queue.dispose();
+    }
+
+    @Test
+    public void testAddThenRemoveCancels() {
+        queue.enqueue(Arrays.asList(
+                new AddAxiom(ontology, koalaDeclaration),
+                new RemoveAxiom(ontology, koalaDeclaration)));
+        assertThat(queue.isEmpty(), is(true));
+        assertThat(queue.drain(), is(empty()));
+    }
+
+    @Test
+    public void testRemoveThenAddCancels() {
+        queue.enqueue(Arrays.asList(new RemoveAxiom(ontology, koalaDeclaration)));
+        queue.enqueue(Arrays.asList(new AddAxiom(ontology, koalaDeclaration)));
+        assertThat(queue.drain(), is(empty()));
+    }
+
+    @Test
+    public void testRepeatedChangesCoalesce() {
+        AddAxiom addKoala = new AddAxiom(ontology, koalaDeclaration);
+        AddAxiom addQuokka = new AddAxiom(ontology, quokkaDeclaration);
+        queue.enqueue(Arrays.asList(addKoala, addQuokka));
+        queue.enqueue(Arrays.asList(new AddAxiom(ontology, koalaDeclaration)));
+        assertThat(queue.drain(), contains(addKoala, addQuokka));
+        assertThat(queue.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDrainKeepsArrivalOrder() {
+        RemoveAxiom removeQuokka = new RemoveAxiom(ontology, quokkaDeclaration);
+        AddAxiom addKoala = new AddAxiom(ontology, koalaDeclaration);
+        queue.enqueue(Arrays.asList(removeQuokka));
+        queue.enqueue(Arrays.asList(addKoala));
+        assertThat(queue.drain(), contains(removeQuokka, addKoala));
+    }
+
+    @Test
+    public void testFlushAfterQuietPeriod() throws InterruptedException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        IndexUpdateQueue flushingQueue = new IndexUpdateQueue(flushed::countDown, 10, NEVER);
+        try {
+            flushingQueue.enqueue(Arrays.asList(new AddAxiom(ontology, koalaDeclaration)));
+            assertThat(flushed.await(5, TimeUnit.SECONDS), is(true));
+        }
+        finally {
+            flushingQueue.dispose();
+        }
+    }
+}
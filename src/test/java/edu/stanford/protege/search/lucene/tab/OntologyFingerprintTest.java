@@ -0,0 +1,75 @@
+package edu.stanford.protege.search.lucene.tab;
+
+import edu.stanford.protege.search.lucene.tab.engine.OntologyFingerprint;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class OntologyFingerprintTest {
+
+    private OWLOntologyManager ontologyMngr;
+
+    private OWLOntology koalaOntology;
+
+    private OWLDataFactory df;
+
+    @Before
+    public void setUp() throws Exception {
+        ontologyMngr = OWLManager.createOWLOntologyManager();
+        koalaOntology = KoalaOntology.load(ontologyMngr);
+        df = ontologyMngr.getOWLDataFactory();
+    }
+
+    @Test
+    public void testApplyChangesEqualsRecomputing() {
+        OntologyFingerprint fingerprint = OntologyFingerprint.of(Collections.singleton(koalaOntology));
+        String before = fingerprint.getValue();
+
+        OWLAxiom wallabyLabel = df.getOWLAnnotationAssertionAxiom(KoalaOntology.rdfsLabel, KoalaOntology.quokkaIri,
+                df.getOWLLiteral("Short-tailed Scrub Wallaby"));
+        OWLAxiom subClassOf = df.getOWLSubClassOfAxiom(KoalaOntology.koala, KoalaOntology.tasmanianDevil);
+        OWLAxiom koalaLabel = koalaOntology.getAnnotationAssertionAxioms(KoalaOntology.koalaIri).iterator().next();
+        List<OWLOntologyChange> changes = Arrays.asList(
+                new AddAxiom(koalaOntology, wallabyLabel),
+                new RemoveAxiom(koalaOntology, koalaLabel),
+                new AddAxiom(koalaOntology, subClassOf),
+                new RemoveAxiom(koalaOntology, subClassOf));
+        ontologyMngr.applyChanges(changes);
+        fingerprint.apply(changes);
+
+        String after = OntologyFingerprint.of(Collections.singleton(koalaOntology)).getValue();
+        assertThat(fingerprint.getValue(), is(after));
+        assertThat(after, is(not(before)));
+    }
+
+    @Test
+    public void testRevertedChangesRestoreFingerprint() {
+        OntologyFingerprint fingerprint = OntologyFingerprint.of(Collections.singleton(koalaOntology));
+        String before = fingerprint.getValue();
+
+        OWLAxiom quokkaLabel = koalaOntology.getAnnotationAssertionAxioms(KoalaOntology.quokkaIri).iterator().next();
+        List<OWLOntologyChange> changes = Collections.singletonList(new RemoveAxiom(koalaOntology, quokkaLabel));
+        ontologyMngr.applyChanges(changes);
+        fingerprint.apply(changes);
+        List<OWLOntologyChange> reverted = Collections.singletonList(new AddAxiom(koalaOntology, quokkaLabel));
+        ontologyMngr.applyChanges(reverted);
+        fingerprint.apply(reverted);
+
+        assertThat(fingerprint.getValue(), is(before));
+    }
+
+    @Test
+    public void testParseValue() {
+        OntologyFingerprint fingerprint = OntologyFingerprint.of(Collections.singleton(koalaOntology));
+        assertThat(OntologyFingerprint.parse(fingerprint.getValue()).getValue(), is(fingerprint.getValue()));
+    }
+}
@@ -1,8 +1,10 @@
 package edu.stanford.protege.search.lucene.tab;
 
 import edu.stanford.protege.search.lucene.tab.engine.*;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,21 +15,30 @@ import org.mockito.stubbing.Answer;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.model.OWLModelManagerImpl;
 import org.protege.editor.owl.model.find.OWLEntityFinder;
-import org.protege.editor.search.lucene.IndexDelegator;
 import org.protege.editor.search.lucene.LuceneSearcher;
 import org.protege.editor.search.lucene.QueryEvaluationException;
 import org.protege.editor.search.lucene.SearchContext;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWL2Datatype;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.when;
 
@@ -36,7 +47,9 @@ public class SearchQueryTest {
 
     private SearchTabIndexer indexer;
 
-    private IndexDelegator delegator;
+    private SearchTabIndexDelegator delegator;
+
+    private final List<IndexSnapshot> snapshots = new ArrayList<>();
 
     @Mock
     private OWLModelManagerImpl mngr;
@@ -87,10 +100,19 @@ public class SearchQueryTest {
         activeOntologies.add(koalaOntology);
         when(searchContext.getOntologies()).thenReturn(activeOntologies);
         
-        delegator = IndexDelegator.getInstance(directory, indexer.getIndexWriterConfig());
+        delegator = SearchTabIndexDelegator.getInstance(directory, indexer.getIndexWriterConfig());
         indexer.doIndex(delegator, searchContext, null);
     }
 
+    @After
+    public void tearDown() throws IOException {
+        for (IndexSnapshot snapshot : snapshots) {
+            snapshot.close();
+        }
+        snapshots.clear();
+        delegator.dispose();
+    }
+
     @Test
     public void testContainsQuery() throws IOException, QueryEvaluationException {
         KeywordQuery query = getQueryFactory().createContainsFilter(KoalaOntology.rdfsLabel, "male");
@@ -101,6 +123,73 @@ public class SearchQueryTest {
                 KoalaOntology.male));
     }
 
+    @Test
+    public void testContainsSubstringQuery() throws IOException, QueryEvaluationException {
+        IndexFieldOptions fieldOptions = new IndexFieldOptions(
+                Collections.singleton(KoalaOntology.rdfsLabel.getIRI().toString()), Collections.emptySet());
+        BasicQuery.Factory queryFactory = getQueryFactory(fieldOptions);
+        KeywordQuery query = queryFactory.createContainsFilter(KoalaOntology.rdfsLabel, "mal");
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(2));
+        assertThat(results, containsInAnyOrder(
+                KoalaOntology.female,
+                KoalaOntology.male));
+
+        query = queryFactory.createContainsFilter(KoalaOntology.rdfsLabel, "emal");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.female));
+    }
+
+    @Test
+    public void testContainsLongSubstringQuery() throws IOException, QueryEvaluationException {
+        OWLOntology koalaOntology = searchContext.getOntologies().iterator().next();
+        OWLDataFactory df = koalaOntology.getOWLOntologyManager().getOWLDataFactory();
+        // "woodlandhabit" is longer than the largest n-gram, its two 12-grams are
+        // "woodlandhabi" and "oodlandhabit"
+        Set<OWLAxiom> axioms = new HashSet<>(Arrays.asList(
+                df.getOWLAnnotationAssertionAxiom(KoalaOntology.rdfsLabel, KoalaOntology.quokkaIri,
+                        df.getOWLLiteral("Woodlandhabitat dweller")),
+                df.getOWLAnnotationAssertionAxiom(KoalaOntology.rdfsLabel, KoalaOntology.tasmanianDevilIri,
+                        df.getOWLLiteral("Woodlandhabi Oodlandhabit"))));
+        koalaOntology.getOWLOntologyManager().addAxioms(koalaOntology, axioms);
+        try {
+            IndexFieldOptions fieldOptions = new IndexFieldOptions(
+                    Collections.singleton(KoalaOntology.rdfsLabel.getIRI().toString()), Collections.emptySet());
+            KeywordQuery query = getQueryFactory(fieldOptions).createContainsFilter(KoalaOntology.rdfsLabel,
+                    "woodlandhabit");
+            Set<OWLEntity> results = getQueryEvaluationResults(query);
+            assertThat(results, hasSize(1));
+            assertThat(results, containsInAnyOrder(KoalaOntology.quokka));
+        }
+        finally {
+            koalaOntology.getOWLOntologyManager().removeAxioms(koalaOntology, axioms); // leave the fixture as loaded
+        }
+    }
+
+    @Test
+    public void testPropertyFieldQuery() throws IOException, QueryEvaluationException {
+        IndexFieldOptions fieldOptions = new IndexFieldOptions(
+                Collections.emptySet(), Collections.singleton(KoalaOntology.rdfsLabel.getIRI().toString()));
+        BasicQuery.Factory queryFactory = getQueryFactory(fieldOptions);
+        KeywordQuery query = queryFactory.createContainsFilter(KoalaOntology.rdfsLabel, "male");
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(2));
+        assertThat(results, containsInAnyOrder(
+                KoalaOntology.female,
+                KoalaOntology.male));
+
+        query = queryFactory.createContainsFilter(KoalaOntology.rdfsLabel, "tasmanian devil");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.tasmanianDevil));
+
+        query = queryFactory.createStartsWithFilter(KoalaOntology.rdfsLabel, "quok");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.quokka));
+    }
+
     @Test
     public void testExactMatchQuery() throws IOException, QueryEvaluationException {
         KeywordQuery query = getQueryFactory().createExactMatchFilter(KoalaOntology.rdfsLabel, "male");
@@ -109,6 +198,169 @@ public class SearchQueryTest {
         assertThat(results, containsInAnyOrder(KoalaOntology.male));
     }
 
+    @Test
+    public void testExactMatchWholeValueQuery() throws IOException, QueryEvaluationException {
+        KeywordQuery query = getQueryFactory().createExactMatchFilter(KoalaOntology.rdfsLabel, "tasmanian  devil ");
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.tasmanianDevil));
+
+        query = getQueryFactory().createExactMatchFilter(KoalaOntology.rdfsLabel, "tasmanian");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(0));
+    }
+
+    @Test
+    public void testBulkMatchQuery() throws IOException, QueryEvaluationException {
+        BulkMatchQuery query = getQueryFactory().createBulkMatchFilter(KoalaOntology.rdfsLabel,
+                Arrays.asList("Male", "female", "Tasmanian Devil", "Platypus"));
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(3));
+        assertThat(results, containsInAnyOrder(
+                KoalaOntology.male,
+                KoalaOntology.female,
+                KoalaOntology.tasmanianDevil));
+
+        Map<String, Set<OWLEntity>> matches = query.evaluateMatches();
+        assertThat(matches.get("Male"), containsInAnyOrder(KoalaOntology.male));
+        assertThat(matches.get("female"), containsInAnyOrder(KoalaOntology.female));
+        assertThat(matches.get("Tasmanian Devil"), containsInAnyOrder(KoalaOntology.tasmanianDevil));
+        assertThat(matches.get("Platypus"), hasSize(0));
+
+        query = getQueryFactory().createBulkMatchFilter(KoalaOntology.rdfsLabel,
+                new BufferedReader(new StringReader("Male\r\nPlatypus\nTasmanian Devil\n")));
+        assertThat(getQueryEvaluationResults(query), containsInAnyOrder(
+                KoalaOntology.male,
+                KoalaOntology.tasmanianDevil));
+    }
+
+    @Test
+    public void testSplitBulkValues() {
+        assertThat(BasicQuery.Factory.splitBulkValues("Male|female\nTasmanian Devil"),
+                contains("Male", "female", "Tasmanian Devil"));
+        assertThat(BasicQuery.Factory.splitBulkValues("a\\|b|c\\\\|d"), contains("a|b", "c\\", "d"));
+    }
+
+    @Test
+    public void testRangeQuery() throws IOException, QueryEvaluationException {
+        OWLOntology koalaOntology = searchContext.getOntologies().iterator().next();
+        OWLDataFactory df = koalaOntology.getOWLOntologyManager().getOWLDataFactory();
+        OWLAnnotationProperty weight = df.getOWLAnnotationProperty(IRI.create(KoalaOntology.ONTOLOGY_ID, "weight"));
+        OWLAnnotationProperty discovered = df.getOWLAnnotationProperty(IRI.create(KoalaOntology.ONTOLOGY_ID, "discovered"));
+        Set<OWLAxiom> axioms = new HashSet<>(Arrays.asList(
+                df.getOWLAnnotationAssertionAxiom(weight, KoalaOntology.quokkaIri,
+                        df.getOWLLiteral("3.5", OWL2Datatype.XSD_DECIMAL)),
+                df.getOWLAnnotationAssertionAxiom(weight, KoalaOntology.tasmanianDevilIri,
+                        df.getOWLLiteral("8", OWL2Datatype.XSD_INTEGER)),
+                df.getOWLAnnotationAssertionAxiom(discovered, KoalaOntology.quokkaIri,
+                        df.getOWLLiteral("1658-01-01T00:00:00", OWL2Datatype.XSD_DATE_TIME)),
+                df.getOWLAnnotationAssertionAxiom(discovered, KoalaOntology.tasmanianDevilIri,
+                        df.getOWLLiteral("1807-06-30T12:00:00Z", OWL2Datatype.XSD_DATE_TIME))));
+        koalaOntology.getOWLOntologyManager().addAxioms(koalaOntology, axioms);
+        try {
+            BasicQuery.Factory queryFactory = getQueryFactory(IndexFieldOptions.NONE);
+
+            BasicQuery query = queryFactory.createQuery(weight, QueryType.GREATER_THAN, "3.5");
+            Set<OWLEntity> results = getQueryEvaluationResults(query);
+            assertThat(results, hasSize(1));
+            assertThat(results, containsInAnyOrder(KoalaOntology.tasmanianDevil));
+
+            query = queryFactory.createQuery(weight, QueryType.LESS_THAN, "10");
+            results = getQueryEvaluationResults(query);
+            assertThat(results, hasSize(2));
+            assertThat(results, containsInAnyOrder(KoalaOntology.quokka, KoalaOntology.tasmanianDevil));
+
+            query = queryFactory.createQuery(weight, QueryType.BETWEEN, "3 .. 5");
+            results = getQueryEvaluationResults(query);
+            assertThat(results, hasSize(1));
+            assertThat(results, containsInAnyOrder(KoalaOntology.quokka));
+
+            query = queryFactory.createQuery(discovered, QueryType.GREATER_THAN, "1700-01-01");
+            results = getQueryEvaluationResults(query);
+            assertThat(results, hasSize(1));
+            assertThat(results, containsInAnyOrder(KoalaOntology.tasmanianDevil));
+
+            query = queryFactory.createQuery(discovered, QueryType.GREATER_THAN, "1700"); // a number, not a date
+            try {
+                getQueryEvaluationResults(query);
+                fail("Expected the bound to be rejected for the date values");
+            }
+            catch (QueryEvaluationException e) {
+                // expected
+            }
+        }
+        finally {
+            koalaOntology.getOWLOntologyManager().removeAxioms(koalaOntology, axioms); // leave the fixture as loaded
+        }
+    }
+
+    @Test
+    public void testFuzzyQuery() throws IOException, QueryEvaluationException {
+        KeywordQuery query = getQueryFactory().createFuzzyFilter(KoalaOntology.rdfsLabel, "tasmanain devl");
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.tasmanianDevil));
+
+        BasicQuery.Factory queryFactory = getQueryFactory();
+        query = queryFactory.createFuzzyFilter(KoalaOntology.rdfsLabel, "qokka");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.quokka));
+
+        queryFactory.setFuzzyParameters(0, 1);
+        query = queryFactory.createFuzzyFilter(KoalaOntology.rdfsLabel, "qokka");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(0));
+    }
+
+    @Test
+    public void testRegexQuery() throws IOException, QueryEvaluationException {
+        KeywordQuery query = getQueryFactory().createRegexFilter(KoalaOntology.rdfsLabel, "^Tasmanian\\s\\w+$");
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.tasmanianDevil));
+
+        query = getQueryFactory().createRegexFilter(KoalaOntology.rdfsLabel, "^(fe)?male$");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(2));
+        assertThat(results, containsInAnyOrder(
+                KoalaOntology.female,
+                KoalaOntology.male));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegexQueryTooComplex() throws IOException {
+        getQueryFactory().createRegexFilter(KoalaOntology.rdfsLabel, "(a|b)*a(a|b){20}");
+    }
+
+    @Test
+    public void testWildcardQuery() throws IOException, QueryEvaluationException {
+        KeywordQuery query = getQueryFactory().createWildcardFilter(KoalaOntology.rdfsLabel, "?ale");
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.male));
+
+        query = getQueryFactory().createWildcardFilter(KoalaOntology.rdfsLabel, "*Male");
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(2));
+        assertThat(results, containsInAnyOrder(
+                KoalaOntology.female,
+                KoalaOntology.male));
+    }
+
+    @Test
+    public void testValueSuggestions() throws IOException {
+        IndexReader reader = openSnapshot().getSearcher().getIndexReader();
+        String labelIri = KoalaOntology.rdfsLabel.getIRI().toString();
+        assertThat(ValueSuggester.lookup(reader, labelIri, "tas", 10), contains("Tasmanian Devil"));
+        assertThat(ValueSuggester.lookup(reader, labelIri, "DEV", 10), contains("Tasmanian Devil"));
+        assertThat(ValueSuggester.lookup(reader, labelIri, "forest", 10),
+                containsInAnyOrder("Rain Forest", "Dry Eucalypt Forest"));
+        assertThat(ValueSuggester.lookup(reader, labelIri, "platypus", 10), hasSize(0));
+        assertThat(ValueSuggester.lookup(reader, KoalaOntology.rdfsComment.getIRI().toString(), "the quokka", 10),
+                hasSize(0));
+    }
+
     @Test
     public void testStartsWithQuery() throws IOException, QueryEvaluationException {
         KeywordQuery query = getQueryFactory().createStartsWithFilter(KoalaOntology.rdfsLabel, "fem");
@@ -127,6 +379,52 @@ public class SearchQueryTest {
                 KoalaOntology.male));
     }
 
+    @Test
+    public void testEndsWithQueryAfterIncrementalUpdate() throws IOException, QueryEvaluationException {
+        OWLOntology koalaOntology = searchContext.getOntologies().iterator().next();
+        OWLDataFactory df = koalaOntology.getOWLOntologyManager().getOWLDataFactory();
+        AddAxiom change = new AddAxiom(koalaOntology, df.getOWLAnnotationAssertionAxiom(KoalaOntology.rdfsLabel,
+                KoalaOntology.quokkaIri, df.getOWLLiteral("Short-tailed Scrub Wallaby")));
+        koalaOntology.getOWLOntologyManager().applyChange(change);
+        SearchTabAddChangeSetHandler addHandler = new SearchTabAddChangeSetHandler(editorKit);
+        addHandler.visit(change);
+        indexer.doUpdate(delegator, Collections.emptySet(), addHandler.getPendingDocuments());
+        delegator.refresh();
+
+        KeywordQuery query = getQueryFactory().createEndsWithFilter(KoalaOntology.rdfsLabel, "wallaby");
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(1));
+        assertThat(results, containsInAnyOrder(KoalaOntology.quokka));
+    }
+
+    @Test
+    public void testDescendantOfQuery() throws IOException, QueryEvaluationException {
+        DescendantOfQuery query = getQueryFactory().createDescendantOfFilter(KoalaOntology.marsupials);
+        Set<OWLEntity> results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(4));
+        assertThat(results, containsInAnyOrder(
+                KoalaOntology.koala,
+                KoalaOntology.koalaWithPhd,
+                KoalaOntology.quokka,
+                KoalaOntology.tasmanianDevil));
+
+        query = getQueryFactory().createDescendantOfFilter(KoalaOntology.habitatIri.toString());
+        results = getQueryEvaluationResults(query);
+        assertThat(results, hasSize(3));
+        assertThat(results, containsInAnyOrder(
+                KoalaOntology.forest,
+                KoalaOntology.rainForest,
+                KoalaOntology.dryEucalyptForest));
+
+        try {
+            getQueryFactory().createDescendantOfFilter("Kangaroo");
+            fail("A class that does not exist should be rejected");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testPropertyValuePresentQuery() throws IOException, QueryEvaluationException {
         /*
@@ -704,19 +1002,41 @@ public class SearchQueryTest {
     }
 
     private BasicQuery.Factory getQueryFactory() throws IOException {
-        LuceneSearcher searcher = new ThinLuceneSearcher(delegator.getSearcher(), editorKit);
+        LuceneSearcher searcher = new ThinLuceneSearcher(openSnapshot().getSearcher(), editorKit);
         return new BasicQuery.Factory(searchContext, searcher);
     }
 
+    /*
+     * Builds the index again with the given optional fields and returns a factory for
+     * queries that use them.
+     */
+    private BasicQuery.Factory getQueryFactory(IndexFieldOptions fieldOptions) throws IOException {
+        indexer.setFieldOptions(fieldOptions);
+        delegator.dispose(); // closed once the snapshots taken from it are closed
+        delegator = SearchTabIndexDelegator.getInstance(new RAMDirectory(), indexer.getIndexWriterConfig());
+        indexer.doIndex(delegator, searchContext, null);
+        LuceneSearcher searcher = new ThinLuceneSearcher(openSnapshot().getSearcher(), editorKit);
+        return new BasicQuery.Factory(searchContext, searcher, fieldOptions);
+    }
+
     private NegatedQuery.Builder getNegatedQueryBuilder() throws IOException {
         return new NegatedQuery.Builder(searchContext);
     }
 
     private NestedQuery.Builder getNestedQueryBuilder() throws IOException {
-        LuceneSearcher searcher = new ThinLuceneSearcher(delegator.getSearcher(), editorKit);
+        LuceneSearcher searcher = new ThinLuceneSearcher(openSnapshot().getSearcher(), editorKit);
         return new NestedQuery.Builder(searcher);
     }
 
+    /*
+     * Pins the current index for the rest of the test, the snapshots are closed in tearDown.
+     */
+    private IndexSnapshot openSnapshot() throws IOException {
+        IndexSnapshot snapshot = delegator.openSnapshot();
+        snapshots.add(snapshot);
+        return snapshot;
+    }
+
     private static Set<OWLEntity> getQueryEvaluationResults(SearchTabQuery query) throws QueryEvaluationException {
         return query.evaluate(null, new AtomicBoolean(false));
     }
@@ -0,0 +1,235 @@
+package edu.stanford.protege.search.lucene.tab;
+
+import edu.stanford.protege.search.lucene.tab.engine.*;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.model.OWLModelManagerImpl;
+import org.protege.editor.owl.model.find.OWLEntityFinder;
+import org.protege.editor.search.lucene.SearchContext;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Covers the incremental maintenance of the index: the content-keyed updates and
+ * deletes, the isolation of snapshots from later updates, and the replay of a change
+ * journal.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class SearchTabIndexUpdateTest {
+
+    @Rule
+    public TemporaryFolder indexFolder = new TemporaryFolder();
+
+    private OWLOntology koalaOntology;
+
+    private OWLDataFactory df;
+
+    private SearchTabIndexer indexer;
+
+    private SearchTabIndexDelegator delegator;
+
+    @Mock
+    private OWLModelManagerImpl mngr;
+
+    @Mock
+    private OWLEntityFinder entityFinder;
+
+    @Mock
+    private OWLEditorKit editorKit;
+
+    @Mock
+    private SearchContext searchContext;
+
+    @Before
+    public void setUp() throws Exception {
+        OWLOntologyManager ontologyMngr = OWLManager.createOWLOntologyManager();
+        when(mngr.getOWLOntologyManager()).thenReturn(ontologyMngr);
+        when(mngr.getRendering(any(OWLObject.class))).thenAnswer(invocation -> {
+            OWLObject arg = (OWLObject) invocation.getArguments()[0];
+            if (arg instanceof OWLEntity) {
+                String iriString = ((OWLEntity) arg).getIRI().toString();
+                return iriString.substring(iriString.lastIndexOf('#'));
+            }
+            else {
+                return arg.toString();
+            }
+        });
+
+        koalaOntology = KoalaOntology.load(ontologyMngr);
+        df = ontologyMngr.getOWLDataFactory();
+        when(entityFinder.getEntities(any(IRI.class))).thenAnswer(invocation -> {
+            IRI arg = (IRI) invocation.getArguments()[0];
+            return koalaOntology.getEntitiesInSignature(arg);
+        });
+
+        when(editorKit.getOWLModelManager()).thenReturn(mngr);
+        when(editorKit.getOWLModelManager().getOWLEntityFinder()).thenReturn(entityFinder);
+        indexer = new SearchTabIndexer(editorKit);
+
+        Directory directory = new RAMDirectory();
+        Set<OWLOntology> activeOntologies = new HashSet<>();
+        activeOntologies.add(koalaOntology);
+        when(searchContext.getOntologies()).thenReturn(activeOntologies);
+
+        delegator = SearchTabIndexDelegator.getInstance(directory, indexer.getIndexWriterConfig());
+        indexer.doIndex(delegator, searchContext, null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        delegator.dispose();
+    }
+
+    @Test
+    public void testUpdateAndDeleteByContentKey() throws IOException {
+        OWLAxiom label = getWallabyLabel();
+        String key = ContentKey.of(koalaOntology.getOntologyID(), label);
+        assertThat(countDocuments(key), is(0));
+
+        AddAxiom addition = new AddAxiom(koalaOntology, label);
+        applyAddition(addition);
+        int count = countDocuments(key);
+        assertThat(count, greaterThan(0));
+
+        applyAddition(addition); // the same change again replaces the documents
+        assertThat(countDocuments(key), is(count));
+
+        applyRemovals(Collections.singletonList(new RemoveAxiom(koalaOntology, label)));
+        assertThat(countDocuments(key), is(0));
+    }
+
+    @Test
+    public void testRemoveDeclarationOfReferencedEntity() throws IOException {
+        String entityKey = ContentKey.of(koalaOntology.getOntologyID(), KoalaOntology.quokka);
+        assertThat(countDocuments(entityKey), is(1));
+
+        // the quokka is still used in the subclass axioms
+        applyRemovals(Collections.singletonList(
+                new RemoveAxiom(koalaOntology, df.getOWLDeclarationAxiom(KoalaOntology.quokka))));
+        assertThat(countDocuments(entityKey), is(1));
+    }
+
+    @Test
+    public void testRemoveLastReferenceOfEntity() throws IOException {
+        String entityKey = ContentKey.of(koalaOntology.getOntologyID(), KoalaOntology.quokka);
+        List<RemoveAxiom> removals = new ArrayList<>();
+        for (OWLAxiom axiom : koalaOntology.getReferencingAxioms(KoalaOntology.quokka)) {
+            removals.add(new RemoveAxiom(koalaOntology, axiom));
+        }
+        applyRemovals(removals);
+        assertThat(koalaOntology.containsEntityInSignature(KoalaOntology.quokka), is(false));
+        assertThat(countDocuments(entityKey), is(0));
+    }
+
+    @Test
+    public void testSnapshotIgnoresLaterUpdates() throws IOException {
+        OWLAxiom label = getWallabyLabel();
+        TermQuery query = new TermQuery(new Term(SearchTabIndexField.CONTENT_KEY,
+                ContentKey.of(koalaOntology.getOntologyID(), label)));
+        try (IndexSnapshot before = delegator.openSnapshot()) {
+            applyAddition(new AddAxiom(koalaOntology, label));
+            assertThat(before.getSearcher().count(query), is(0));
+            try (IndexSnapshot after = delegator.openSnapshot()) {
+                assertThat(after.getSearcher().count(query), greaterThan(0));
+            }
+        }
+    }
+
+    @Test
+    public void testReplayJournaledAddition() throws IOException {
+        OWLAxiom label = getWallabyLabel();
+        String key = ContentKey.of(koalaOntology.getOntologyID(), label);
+        Path indexLocation = indexFolder.getRoot().toPath();
+
+        // the change reaches the ontology and the journal but not the index
+        koalaOntology.getOWLOntologyManager().applyChange(new AddAxiom(koalaOntology, label));
+        IndexChangeJournal journal = IndexChangeJournal.open(indexLocation);
+        journal.append(Collections.singleton(key), Collections.singleton(KoalaOntology.quokkaIri.toString()));
+
+        IndexChangeJournal reopened = IndexChangeJournal.open(indexLocation);
+        assertThat(reopened.getContentKeys(), contains(key));
+        assertThat(reopened.getEntityIris(), contains(KoalaOntology.quokkaIri.toString()));
+
+        indexer.doReplay(delegator, searchContext, reopened.getContentKeys(), reopened.getEntityIris());
+        delegator.refresh();
+        assertThat(countDocuments(key), greaterThan(0));
+
+        reopened.clear();
+        assertThat(IndexChangeJournal.open(indexLocation).isEmpty(), is(true));
+    }
+
+    @Test
+    public void testReplayJournaledRemoval() throws IOException {
+        OWLAxiom label = getWallabyLabel();
+        String key = ContentKey.of(koalaOntology.getOntologyID(), label);
+        Path indexLocation = indexFolder.getRoot().toPath();
+        applyAddition(new AddAxiom(koalaOntology, label));
+
+        // the removal reaches the ontology and the journal but not the index
+        koalaOntology.getOWLOntologyManager().applyChange(new RemoveAxiom(koalaOntology, label));
+        IndexChangeJournal.open(indexLocation).append(Collections.singleton(key),
+                Collections.singleton(KoalaOntology.quokkaIri.toString()));
+        assertThat(countDocuments(key), greaterThan(0));
+
+        IndexChangeJournal journal = IndexChangeJournal.open(indexLocation);
+        indexer.doReplay(delegator, searchContext, journal.getContentKeys(), journal.getEntityIris());
+        delegator.refresh();
+        assertThat(countDocuments(key), is(0));
+        assertThat(countDocuments(ContentKey.of(koalaOntology.getOntologyID(), KoalaOntology.quokka)), is(1));
+    }
+
+    private OWLAxiom getWallabyLabel() {
+        return df.getOWLAnnotationAssertionAxiom(KoalaOntology.rdfsLabel, KoalaOntology.quokkaIri,
+                df.getOWLLiteral("Short-tailed Scrub Wallaby"));
+    }
+
+    private void applyAddition(AddAxiom change) throws IOException {
+        koalaOntology.getOWLOntologyManager().applyChange(change);
+        SearchTabAddChangeSetHandler addHandler = new SearchTabAddChangeSetHandler(editorKit);
+        addHandler.visit(change);
+        indexer.doUpdate(delegator, Collections.emptySet(), addHandler.getPendingDocuments());
+        delegator.refresh();
+    }
+
+    private void applyRemovals(List<RemoveAxiom> changes) throws IOException {
+        koalaOntology.getOWLOntologyManager().applyChanges(changes);
+        SearchTabRemoveChangeSetHandler removeHandler = new SearchTabRemoveChangeSetHandler(editorKit);
+        for (RemoveAxiom change : changes) {
+            removeHandler.visit(change);
+        }
+        indexer.doUpdate(delegator, removeHandler.getPendingRemovals(), Collections.emptyList());
+        delegator.refresh();
+    }
+
+    private int countDocuments(String contentKey) throws IOException {
+        try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+            return snapshot.getSearcher().count(new TermQuery(new Term(SearchTabIndexField.CONTENT_KEY, contentKey)));
+        }
+    }
+}
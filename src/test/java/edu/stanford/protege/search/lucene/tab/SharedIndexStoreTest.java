@@ -0,0 +1,167 @@
+package edu.stanford.protege.search.lucene.tab;
+
+import edu.stanford.protege.search.lucene.tab.engine.*;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.model.OWLModelManagerImpl;
+import org.protege.editor.owl.model.find.OWLEntityFinder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SharedIndexStoreTest {
+
+    private static final String RENDERER_ID = "test-renderer";
+
+    @Rule
+    public TemporaryFolder storeFolder = new TemporaryFolder();
+
+    private OWLOntology koalaOntology;
+
+    private SearchTabIndexer indexer;
+
+    private SharedIndexStore store;
+
+    private String key;
+
+    @Mock
+    private OWLModelManagerImpl mngr;
+
+    @Mock
+    private OWLEntityFinder entityFinder;
+
+    @Mock
+    private OWLEditorKit editorKit;
+
+    @Before
+    public void setUp() throws Exception {
+        OWLOntologyManager ontologyMngr = OWLManager.createOWLOntologyManager();
+        when(mngr.getOWLOntologyManager()).thenReturn(ontologyMngr);
+        when(mngr.getRendering(any(OWLObject.class))).thenAnswer(invocation -> {
+            OWLObject arg = (OWLObject) invocation.getArguments()[0];
+            if (arg instanceof OWLEntity) {
+                String iriString = ((OWLEntity) arg).getIRI().toString();
+                return iriString.substring(iriString.lastIndexOf('#'));
+            }
+            else {
+                return arg.toString();
+            }
+        });
+
+        koalaOntology = KoalaOntology.load(ontologyMngr);
+        when(entityFinder.getEntities(any(IRI.class))).thenAnswer(invocation -> {
+            IRI arg = (IRI) invocation.getArguments()[0];
+            return koalaOntology.getEntitiesInSignature(arg);
+        });
+
+        when(editorKit.getOWLModelManager()).thenReturn(mngr);
+        when(editorKit.getOWLModelManager().getOWLEntityFinder()).thenReturn(entityFinder);
+        indexer = new SearchTabIndexer(editorKit);
+
+        store = new SharedIndexStore(storeFolder.getRoot().toPath().resolve("shared"));
+        key = SharedIndexStore.getKey(koalaOntology, RENDERER_ID, indexer.getFieldOptions());
+    }
+
+    @Test
+    public void testReuseEntry() throws IOException {
+        AtomicBoolean built = new AtomicBoolean(false);
+        Path location = store.findOrBuild(key, koalaOntology, indexer, progress -> built.set(true));
+        assertThat(built.get(), is(true));
+        assertThat(store.find(key), is(location));
+
+        built.set(false);
+        assertThat(store.findOrBuild(key, koalaOntology, indexer, progress -> built.set(true)), is(location));
+        assertThat(built.get(), is(false));
+    }
+
+    @Test
+    public void testAddSharedEntry() throws IOException {
+        Path location = store.findOrBuild(key, koalaOntology, indexer, null);
+        int expected = countDocuments(null);
+        assertThat(expected, greaterThan(0));
+        assertThat(countDocuments(location), is(expected));
+    }
+
+    @Test
+    public void testConcurrentBuildsAddSameEntry() throws Exception {
+        Path location = store.findOrBuild(key, koalaOntology, indexer, null);
+        int expected = countDocuments(null);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> builds = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                builds.add(executor.submit(() -> {
+                    barrier.await();
+                    return countDocuments(location);
+                }));
+            }
+            for (Future<Integer> build : builds) {
+                assertThat(build.get(30, TimeUnit.SECONDS), is(expected));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Builds the index of the koala ontology, taking its documents from the given
+     * shared entry unless it is null, and returns the number of documents in it.
+     */
+    private int countDocuments(Path sharedLocation) throws IOException {
+        SearchTabIndexer buildIndexer = new SearchTabIndexer(editorKit);
+        SearchTabIndexDelegator delegator = SearchTabIndexDelegator.getInstance(new RAMDirectory(),
+                buildIndexer.getIndexWriterConfig());
+        Map<OWLOntology, DirectoryReader> sharedIndexes = new HashMap<>();
+        try (Directory directory = (sharedLocation != null) ? FSDirectory.open(sharedLocation) : null) {
+            if (directory != null) {
+                sharedIndexes.put(koalaOntology, DirectoryReader.open(directory));
+            }
+            try {
+                buildIndexer.doIndex(delegator, Collections.singleton(koalaOntology), sharedIndexes, null);
+            }
+            finally {
+                for (DirectoryReader reader : sharedIndexes.values()) {
+                    reader.close();
+                }
+            }
+            try (IndexSnapshot snapshot = delegator.openSnapshot()) {
+                return snapshot.getSearcher().getIndexReader().numDocs();
+            }
+        }
+        finally {
+            delegator.dispose();
+        }
+    }
+}